@@ -0,0 +1,130 @@
+/**
+ * CompactAdjacency.java - Compressed sparse row form of the directed graph
+ * Begun 12/04/17
+ * @author Andrew Eissen
+ */
+
+package commandlinecompiler;
+
+import java.util.Arrays;
+
+/**
+ * Immutable compressed sparse row (CSR) adjacency structure. The successors of vertex
+ * <code>v</code> occupy <code>targets[offsets[v]]</code> up to but excluding
+ * <code>targets[offsets[v + 1]]</code>, so the whole graph costs one <code>int</code> per edge plus
+ * one per vertex, and a traversal walks two flat arrays rather than chasing list nodes around the
+ * heap. Instances are produced by <code>DirectedGraph.compact</code>.
+ */
+final class CompactAdjacency {
+
+    // Start of each vertex's slice in targets, with one trailing entry holding the edge count
+    private final int[] offsets;
+
+    // Concatenated successor indices of all vertices
+    private final int[] targets;
+
+    /**
+     * Parameterized constructor. The arrays are adopted rather than copied, so callers must not
+     * modify them afterwards.
+     * @param offsets
+     * @param targets
+     */
+    public CompactAdjacency(int[] offsets, int[] targets) {
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    /**
+     * Getter for <code>offsets</code>
+     * @return this.offsets
+     */
+    public int[] getOffsets() {
+        return this.offsets;
+    }
+
+    /**
+     * Getter for <code>targets</code>
+     * @return this.targets
+     */
+    public int[] getTargets() {
+        return this.targets;
+    }
+
+    /**
+     * @return int
+     */
+    public int getVertexCount() {
+        return this.offsets.length - 1;
+    }
+
+    /**
+     * @return int
+     */
+    public int getEdgeCount() {
+        return this.offsets[this.offsets.length - 1];
+    }
+
+    /**
+     * Index of the first edge leaving the vertex
+     * @param vertex
+     * @return int
+     */
+    public int start(int vertex) {
+        return this.offsets[vertex];
+    }
+
+    /**
+     * Index one past the last edge leaving the vertex
+     * @param vertex
+     * @return int
+     */
+    public int end(int vertex) {
+        return this.offsets[vertex + 1];
+    }
+
+    /**
+     * Number of distinct successors of the vertex
+     * @param vertex
+     * @return int
+     */
+    public int degree(int vertex) {
+        return this.offsets[vertex + 1] - this.offsets[vertex];
+    }
+
+    /**
+     * Getter for the successor stored at the given edge index
+     * @param edge
+     * @return int
+     */
+    public int target(int edge) {
+        return this.targets[edge];
+    }
+
+    /**
+     * Builds the transpose of the structure, in which every edge is reversed, with a counting
+     * sort over two linear passes. The predecessors of each vertex come out in ascending order.
+     * @return CompactAdjacency
+     */
+    public CompactAdjacency transpose() {
+        int vertexCount = this.getVertexCount();
+        int[] reverseOffsets = new int[vertexCount + 1];
+        int[] reverseTargets = new int[this.targets.length];
+
+        // Counts the in-degree of each vertex one slot ahead, then turns the counts into offsets
+        for (int target : this.targets) {
+            reverseOffsets[target + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            reverseOffsets[v + 1] += reverseOffsets[v];
+        }
+
+        // Each slice is filled through a cursor starting at its offset
+        int[] cursors = Arrays.copyOf(reverseOffsets, vertexCount);
+        for (int v = 0; v < vertexCount; v++) {
+            for (int e = this.offsets[v]; e < this.offsets[v + 1]; e++) {
+                reverseTargets[cursors[this.targets[e]]++] = v;
+            }
+        }
+        return new CompactAdjacency(reverseOffsets, reverseTargets);
+    }
+}
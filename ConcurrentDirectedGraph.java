@@ -0,0 +1,344 @@
+/**
+ * ConcurrentDirectedGraph.java - Thread-safe directed graph with snapshot isolation
+ * Begun 12/04/17
+ * @author Andrew Eissen
+ */
+
+package commandlinecompiler;
+
+import java.util.*;
+
+/**
+ * Thread-safe counterpart to <code>DirectedGraph</code> for a single long-lived graph shared by
+ * many query threads while dependency updates are applied in the background.
+ * <br />
+ * <br />
+ * Writers are serialized and apply their changes to a private <code>DirectedGraph</code>, after
+ * which an immutable <code>Snapshot</code> of the result is published through a
+ * <code>volatile</code> field. Readers simply pick up the current snapshot and query it, without
+ * taking any lock, so query throughput grows with the number of reader threads. A reader holding
+ * on to a snapshot keeps seeing exactly that version of the graph, however many updates are
+ * published in the meantime.
+ * <br />
+ * <br />
+ * Publication is copy-on-write. <code>compact</code> always produces fresh arrays and never
+ * modifies those it replaces, so a snapshot merely references the compact form current at the
+ * time. The vertex table and its hash index are copied only if vertices were added or removed
+ * since the previous version, and are shared with it otherwise. Each publication thus costs one
+ * compaction, linear in the size of the graph, so frequent small changes are best applied
+ * together through <code>update</code>, which publishes once per batch.
+ */
+final class ConcurrentDirectedGraph<T> {
+
+    // Writer-side graph, only ever touched while holding writeLock
+    private final DirectedGraph<T> directedGraph;
+    private final Object writeLock;
+
+    // Latest published version
+    private volatile Snapshot<T> current;
+
+    /**
+     * Default constructor, starts out with an empty graph
+     */
+    public ConcurrentDirectedGraph() {
+        this(new DirectedGraph<>());
+    }
+
+    /**
+     * Parameterized constructor, adopts an already built graph such as one returned by
+     * <code>GraphSnapshot.loadOrParse</code>. The graph must not be used directly afterwards.
+     * @param directedGraph
+     */
+    public ConcurrentDirectedGraph(DirectedGraph<T> directedGraph) {
+        this.directedGraph = directedGraph;
+        this.writeLock = new Object();
+
+        // Nothing ever queries the writer-side graph, so its cache would only cost invalidations
+        this.directedGraph.setQueryCacheLimits(0, 0);
+
+        synchronized (this.writeLock) {
+            this.publish();
+        }
+    }
+
+    /**
+     * A batch of changes applied to the writer-side graph by <code>update</code>
+     */
+    @FunctionalInterface
+    interface Update<T, E extends Exception> {
+
+        /**
+         * @param directedGraph
+         * @return void
+         * @throws E
+         */
+        void apply(DirectedGraph<T> directedGraph) throws E;
+    }
+
+    /**
+     * Returns the latest published version of the graph. This is a single <code>volatile</code>
+     * read, and the snapshot returned may be queried from any thread.
+     * @return Snapshot<T>
+     */
+    public Snapshot<T> snapshot() {
+        return this.current;
+    }
+
+    /**
+     * Applies a batch of changes and publishes the result as a single new version, so that
+     * readers never observe part of the batch. Should the batch throw, the changes it made up to
+     * that point are still published before the exception propagates, as each of them leaves the
+     * graph consistent. The graph passed to the batch must not be retained.
+     * @param update
+     * @return void
+     * @throws E
+     */
+    public <E extends Exception> void update(Update<T, E> update) throws E {
+        synchronized (this.writeLock) {
+            try {
+                update.apply(this.directedGraph);
+            } finally {
+                this.publish();
+            }
+        }
+    }
+
+    /**
+     * Adds the edge and publishes the result
+     * @param fromVertex
+     * @param toVertex
+     * @return void
+     * @throws CycleOccurrenceException
+     * @see DirectedGraph#addEdge
+     */
+    public void addEdge(T fromVertex, T toVertex) throws CycleOccurrenceException {
+        this.update(directedGraph -> directedGraph.addEdge(fromVertex, toVertex));
+    }
+
+    /**
+     * Removes the edge and publishes the result
+     * @param fromVertex
+     * @param toVertex
+     * @return boolean
+     * @throws InvalidClassNameException
+     * @see DirectedGraph#removeEdge
+     */
+    public boolean removeEdge(T fromVertex, T toVertex) throws InvalidClassNameException {
+        boolean[] removed = new boolean[1];
+        this.update(directedGraph -> removed[0] = directedGraph.removeEdge(fromVertex, toVertex));
+        return removed[0];
+    }
+
+    /**
+     * Removes the vertex and publishes the result
+     * @param vertex
+     * @return void
+     * @throws InvalidClassNameException
+     * @see DirectedGraph#removeVertex
+     */
+    public void removeVertex(T vertex) throws InvalidClassNameException {
+        this.update(directedGraph -> directedGraph.removeVertex(vertex));
+    }
+
+    /**
+     * Adds the lines in bulk and publishes the result once
+     * @param inputArrays
+     * @return void
+     * @see DirectedGraph#buildDirectedGraph
+     */
+    public void buildDirectedGraph(ArrayList<T[]> inputArrays) {
+        this.update(directedGraph -> directedGraph.buildDirectedGraph(inputArrays));
+    }
+
+    /**
+     * Sorts the given class against the latest version
+     * @param vertex
+     * @return ArrayList<T>
+     * @throws InvalidClassNameException
+     * @throws CycleOccurrenceException
+     */
+    public ArrayList<T> inTopologicalOrder(T vertex)
+            throws InvalidClassNameException, CycleOccurrenceException {
+        return this.current.inTopologicalOrder(vertex);
+    }
+
+    /**
+     * Sorts the given change set against the latest version
+     * @param vertices
+     * @return ArrayList<T>
+     * @throws InvalidClassNameException
+     * @throws CycleOccurrenceException
+     */
+    public ArrayList<T> inTopologicalOrder(Collection<? extends T> vertices)
+            throws InvalidClassNameException, CycleOccurrenceException {
+        return this.current.inTopologicalOrder(vertices);
+    }
+
+    /**
+     * Builds and publishes a snapshot of the writer-side graph. Must be called while holding
+     * <code>writeLock</code>.
+     * @return void
+     */
+    private void publish() {
+        Snapshot<T> previous = this.current;
+        CompactAdjacency adjacency = this.directedGraph.getCompactAdjacency();
+        int modCount = this.directedGraph.getVertexModCount();
+        ArrayList<T> vertices;
+        int[] slots;
+
+        if (previous != null && previous.vertexModCount == modCount) {
+            vertices = previous.vertices;
+            slots = previous.slots;
+        } else {
+            vertices = this.directedGraph.copyVertices();
+            slots = this.directedGraph.buildSlots();
+        }
+
+        long version = (previous == null) ? 0 : previous.version + 1;
+        this.current = new Snapshot<>(vertices, slots, adjacency, modCount, version);
+    }
+
+    /**
+     * Immutable version of the graph. It is backed by a <code>DirectedGraph</code> assembled
+     * from the published arrays with its query cache disabled, on which sorts and cycle reports
+     * only read shared state, so any number of threads may query one snapshot at once. Only
+     * those read-only queries are exposed.
+     */
+    static final class Snapshot<T> {
+
+        private final DirectedGraph<T> directedGraph;
+        private final ArrayList<T> vertices;
+        private final int[] slots;
+        private final int vertexModCount;
+        private final long version;
+
+        /**
+         * Parameterized constructor
+         * @param vertices
+         * @param slots
+         * @param adjacency
+         * @param vertexModCount
+         * @param version
+         */
+        private Snapshot(ArrayList<T> vertices, int[] slots, CompactAdjacency adjacency,
+                int vertexModCount, long version) {
+            this.directedGraph = new DirectedGraph<>(vertices, slots, adjacency);
+            this.directedGraph.setQueryCacheLimits(0, 0);
+            this.vertices = vertices;
+            this.slots = slots;
+            this.vertexModCount = vertexModCount;
+            this.version = version;
+        }
+
+        /**
+         * Getter for <code>version</code>, which grows by one with every publication
+         * @return this.version
+         */
+        public long getVersion() {
+            return this.version;
+        }
+
+        /**
+         * Number of vertex keys in use, including those of removed vertices
+         * @return int
+         */
+        public int getVertexCount() {
+            return this.directedGraph.getVertexCount();
+        }
+
+        /**
+         * @param vertex
+         * @return boolean
+         */
+        public boolean contains(T vertex) {
+            return this.directedGraph.getKey(vertex) != null;
+        }
+
+        /**
+         * @param vertex
+         * @return ArrayList<T>
+         * @throws InvalidClassNameException
+         * @throws CycleOccurrenceException
+         * @see DirectedGraph#inTopologicalOrder(Object)
+         */
+        public ArrayList<T> inTopologicalOrder(T vertex)
+                throws InvalidClassNameException, CycleOccurrenceException {
+            return this.directedGraph.inTopologicalOrder(vertex);
+        }
+
+        /**
+         * @param vertices
+         * @return ArrayList<T>
+         * @throws InvalidClassNameException
+         * @throws CycleOccurrenceException
+         * @see DirectedGraph#inTopologicalOrder(Collection)
+         */
+        public ArrayList<T> inTopologicalOrder(Collection<? extends T> vertices)
+                throws InvalidClassNameException, CycleOccurrenceException {
+            return this.directedGraph.inTopologicalOrder(vertices);
+        }
+
+        /**
+         * @param vertex
+         * @return ArrayList<ArrayList<T>>
+         * @throws InvalidClassNameException
+         * @throws CycleOccurrenceException
+         * @see DirectedGraph#inTopologicalWaves
+         */
+        public ArrayList<ArrayList<T>> inTopologicalWaves(T vertex)
+                throws InvalidClassNameException, CycleOccurrenceException {
+            return this.directedGraph.inTopologicalWaves(vertex);
+        }
+
+        /**
+         * @param vertex
+         * @return ArrayList<ArrayList<T>>
+         * @throws InvalidClassNameException
+         * @see DirectedGraph#inCondensedTopologicalOrder
+         */
+        public ArrayList<ArrayList<T>> inCondensedTopologicalOrder(T vertex)
+                throws InvalidClassNameException {
+            return this.directedGraph.inCondensedTopologicalOrder(vertex);
+        }
+
+        /**
+         * @return ArrayList<ArrayList<T>>
+         * @see DirectedGraph#findCycles
+         */
+        public ArrayList<ArrayList<T>> findCycles() {
+            return this.directedGraph.findCycles();
+        }
+
+        /**
+         * @param vertex
+         * @return ArrayList<T>
+         * @throws InvalidClassNameException
+         * @see DirectedGraph#getPrerequisites
+         */
+        public ArrayList<T> getPrerequisites(T vertex) throws InvalidClassNameException {
+            return this.directedGraph.getPrerequisites(vertex);
+        }
+
+        /**
+         * @param vertex
+         * @return ArrayList<T>
+         * @throws InvalidClassNameException
+         * @see DirectedGraph#getAllPrerequisites
+         */
+        public ArrayList<T> getAllPrerequisites(T vertex) throws InvalidClassNameException {
+            return this.directedGraph.getAllPrerequisites(vertex);
+        }
+
+        /**
+         * @param vertex
+         * @return ArrayList<T>
+         * @throws InvalidClassNameException
+         * @throws CycleOccurrenceException
+         * @see DirectedGraph#inUpstreamTopologicalOrder
+         */
+        public ArrayList<T> inUpstreamTopologicalOrder(T vertex)
+                throws InvalidClassNameException, CycleOccurrenceException {
+            return this.directedGraph.inUpstreamTopologicalOrder(vertex);
+        }
+    }
+}
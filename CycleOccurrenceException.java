@@ -6,13 +6,22 @@
 
 package commandlinecompiler;
 
+import java.util.*;
+
 class CycleOccurrenceException extends Exception {
 
+    /**
+     * Every cycle found, each given as the vertices of one strongly connected component of the
+     * graph. Empty if the thrower did not analyze the cycles.
+     */
+    private final List<List<?>> cycles;
+
     /**
      * Default constructor
      */
     public CycleOccurrenceException() {
         super();
+        this.cycles = Collections.emptyList();
     }
 
     /**
@@ -21,6 +30,17 @@ class CycleOccurrenceException extends Exception {
      */
     public CycleOccurrenceException(String message) {
        super(message);
+       this.cycles = Collections.emptyList();
+    }
+
+    /**
+     * Parameterized constructor
+     * @param message
+     * @param cycles
+     */
+    public CycleOccurrenceException(String message, List<? extends List<?>> cycles) {
+        super(message);
+        this.cycles = Collections.unmodifiableList(new ArrayList<List<?>>(cycles));
     }
 
     /**
@@ -30,6 +50,7 @@ class CycleOccurrenceException extends Exception {
      */
     public CycleOccurrenceException(String message, Throwable cause) {
         super(message, cause);
+        this.cycles = Collections.emptyList();
     }
 
     /**
@@ -38,5 +59,14 @@ class CycleOccurrenceException extends Exception {
      */
     public CycleOccurrenceException(Throwable cause) {
         super(cause);
+        this.cycles = Collections.emptyList();
+    }
+
+    /**
+     * Getter for <code>cycles</code>
+     * @return this.cycles
+     */
+    public List<List<?>> getCycles() {
+        return this.cycles;
     }
 }
\ No newline at end of file
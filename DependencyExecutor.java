@@ -0,0 +1,335 @@
+/**
+ * DependencyExecutor.java - Runs dependency-ordered work in parallel over the directed graph
+ * Begun 12/04/17
+ * @author Andrew Eissen
+ */
+
+package commandlinecompiler;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+
+/**
+ * Companion class to <code>DirectedGraph</code> that, rather than merely computing the
+ * recompilation order, actually runs a user-supplied task for every class reachable from a
+ * changed class. Each class is submitted to a <code>ForkJoinPool</code> the moment its last
+ * prerequisite completes, so there is no barrier between the waves returned by
+ * <code>inTopologicalWaves</code>; a long-running class only holds back its own dependents.
+ * <br />
+ * <br />
+ * The number of tasks running at once is capped by the parallelism of the pool. Should a task
+ * throw, every class depending on it, directly or transitively, is cancelled without being run,
+ * while unrelated branches carry on. The graph must not be modified while an execution is under
+ * way.
+ */
+final class DependencyExecutor<T> {
+
+    /**
+     * Per-vertex states of a single execution. Vertices start out <code>PENDING</code> and move
+     * exactly once into one of the three terminal states.
+     */
+    private static final int PENDING = 0;
+    private static final int COMPLETED = 1;
+    private static final int FAILED = 2;
+    private static final int CANCELLED = 3;
+
+    // Graph whose dependency relationships are honored
+    private final DirectedGraph<T> directedGraph;
+
+    // Pool on which the user tasks are run
+    private final ForkJoinPool pool;
+
+    /**
+     * Default constructor, allows one running task per available processor
+     * @param directedGraph
+     */
+    public DependencyExecutor(DirectedGraph<T> directedGraph) {
+        this(directedGraph, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Parameterized constructor
+     * @param directedGraph
+     * @param parallelism Maximum number of tasks running at once
+     */
+    public DependencyExecutor(DirectedGraph<T> directedGraph, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.directedGraph = directedGraph;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Runs <code>task</code> for the given class and every class depending on it, respecting the
+     * dependency order, and blocks until every one of them has completed, failed or been
+     * cancelled. The reachable set and its in-degrees are gathered up front by the graph, and the
+     * subgraph is checked for cycles before anything is submitted, as a vertex on a cycle would
+     * otherwise never become ready.
+     * @param vertex
+     * @param task
+     * @return ExecutionReport<T>
+     * @throws InvalidClassNameException
+     * @throws CycleOccurrenceException
+     * @throws InterruptedException
+     */
+    public ExecutionReport<T> execute(T vertex, Consumer<? super T> task)
+            throws InvalidClassNameException, CycleOccurrenceException, InterruptedException {
+
+        Integer vertexIndex = this.directedGraph.getKey(vertex);
+        if (vertexIndex == null) {
+            throw new InvalidClassNameException("No such class");
+        }
+
+        CompactAdjacency adjacency = this.directedGraph.getCompactAdjacency();
+        int[] inDegrees = new int[this.directedGraph.getVertexCount()];
+        IntStack reachable = this.directedGraph.collectReachable(vertexIndex, inDegrees);
+
+        if (!DependencyExecutor.isAcyclic(adjacency, vertexIndex, inDegrees.clone(),
+                reachable.size())) {
+            throw this.directedGraph.cycleException(vertexIndex);
+        }
+
+        Execution execution = new Execution(adjacency, inDegrees, reachable.size(), task);
+        execution.submit(vertexIndex);
+        execution.await();
+
+        return execution.report(reachable);
+    }
+
+    /**
+     * Stops accepting executions and waits briefly for running tasks to wind down
+     * @return void
+     * @throws InterruptedException
+     */
+    public void shutdown() throws InterruptedException {
+        this.pool.shutdown();
+        this.pool.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Dry run of Kahn's algorithm over the reachable set. Consumes the supplied in-degree array,
+     * which callers are expected to have copied.
+     * @param adjacency
+     * @param index
+     * @param inDegrees
+     * @param reachableCount
+     * @return boolean
+     */
+    private static boolean isAcyclic(CompactAdjacency adjacency, int index, int[] inDegrees,
+            int reachableCount) {
+
+        int[] offsets = adjacency.getOffsets();
+        int[] targets = adjacency.getTargets();
+        IntStack ready = new IntStack();
+        int processed = 0;
+
+        if (inDegrees[index] == 0) {
+            ready.push(index);
+        }
+
+        while (!ready.isEmpty()) {
+            int current = ready.pop();
+            processed++;
+            for (int e = offsets[current]; e < offsets[current + 1]; e++) {
+                if (--inDegrees[targets[e]] == 0) {
+                    ready.push(targets[e]);
+                }
+            }
+        }
+        return processed == reachableCount;
+    }
+
+    /**
+     * State of a single call to <code>execute</code>. Remaining prerequisite counts and vertex
+     * states are kept in atomic arrays indexed by vertex, so that completing tasks on different
+     * threads can release and cancel dependents without locking.
+     */
+    private final class Execution {
+
+        private final int[] offsets;
+        private final int[] targets;
+        private final AtomicIntegerArray remaining;
+        private final AtomicIntegerArray states;
+        private final Throwable[] failures;
+        private final CountDownLatch finished;
+        private final Consumer<? super T> task;
+
+        /**
+         * Parameterized constructor
+         * @param adjacency
+         * @param inDegrees
+         * @param reachableCount
+         * @param task
+         */
+        public Execution(CompactAdjacency adjacency, int[] inDegrees, int reachableCount,
+                Consumer<? super T> task) {
+            this.offsets = adjacency.getOffsets();
+            this.targets = adjacency.getTargets();
+            this.remaining = new AtomicIntegerArray(inDegrees);
+            this.states = new AtomicIntegerArray(inDegrees.length);
+            this.failures = new Throwable[inDegrees.length];
+            this.finished = new CountDownLatch(reachableCount);
+            this.task = task;
+        }
+
+        /**
+         * Hands a ready vertex over to the pool
+         * @param index
+         * @return void
+         */
+        public void submit(int index) {
+            pool.execute(() -> this.run(index));
+        }
+
+        /**
+         * Runs the user task for the vertex, then either releases its dependents or, on failure,
+         * cancels them. Each vertex counts down <code>finished</code> exactly once, upon entering
+         * its terminal state.
+         * @param index
+         * @return void
+         */
+        private void run(int index) {
+            try {
+                this.task.accept(directedGraph.getVertex(index));
+            } catch (Throwable t) {
+                this.failures[index] = t;
+                this.states.set(index, FAILED);
+                this.finished.countDown();
+                this.cancelDependents(index);
+                return;
+            }
+
+            this.states.set(index, COMPLETED);
+            this.finished.countDown();
+
+            // Dependents whose last prerequisite this was are started immediately
+            for (int e = this.offsets[index]; e < this.offsets[index + 1]; e++) {
+                if (this.remaining.decrementAndGet(this.targets[e]) == 0) {
+                    this.submit(this.targets[e]);
+                }
+            }
+        }
+
+        /**
+         * Marks every transitive dependent of the failed vertex as cancelled. None of them can have
+         * started, as the failed vertex never releases its successors. A vertex already cancelled
+         * by a concurrent failure is not descended into again, since the thread that cancelled it
+         * is responsible for its dependents.
+         * @param index
+         * @return void
+         */
+        private void cancelDependents(int index) {
+            IntStack pending = new IntStack();
+            pending.push(index);
+
+            while (!pending.isEmpty()) {
+                int current = pending.pop();
+                for (int e = this.offsets[current]; e < this.offsets[current + 1]; e++) {
+                    int i = this.targets[e];
+                    if (this.states.compareAndSet(i, PENDING, CANCELLED)) {
+                        this.finished.countDown();
+                        pending.push(i);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Blocks until every reachable vertex has reached a terminal state
+         * @return void
+         * @throws InterruptedException
+         */
+        public void await() throws InterruptedException {
+            this.finished.await();
+        }
+
+        /**
+         * Assembles the outcome of the execution in breadth-first order from the changed class
+         * @param reachable
+         * @return ExecutionReport<T>
+         */
+        public ExecutionReport<T> report(IntStack reachable) {
+            ArrayList<T> completed = new ArrayList<>();
+            LinkedHashMap<T, Throwable> failed = new LinkedHashMap<>();
+            ArrayList<T> cancelled = new ArrayList<>();
+
+            for (int i = 0; i < reachable.size(); i++) {
+                int index = reachable.get(i);
+                T vertex = directedGraph.getVertex(index);
+
+                switch (this.states.get(index)) {
+                    case COMPLETED:
+                        completed.add(vertex);
+                        break;
+                    case FAILED:
+                        failed.put(vertex, this.failures[index]);
+                        break;
+                    default:
+                        cancelled.add(vertex);
+                        break;
+                }
+            }
+            return new ExecutionReport<>(completed, failed, cancelled);
+        }
+    }
+
+    /**
+     * Outcome of a call to <code>execute</code>, listing the classes whose task completed, those
+     * whose task threw along with the exception, and those cancelled because a prerequisite failed
+     */
+    static final class ExecutionReport<T> {
+
+        private final ArrayList<T> completed;
+        private final LinkedHashMap<T, Throwable> failed;
+        private final ArrayList<T> cancelled;
+
+        /**
+         * Parameterized constructor
+         * @param completed
+         * @param failed
+         * @param cancelled
+         */
+        public ExecutionReport(ArrayList<T> completed, LinkedHashMap<T, Throwable> failed,
+                ArrayList<T> cancelled) {
+            this.completed = completed;
+            this.failed = failed;
+            this.cancelled = cancelled;
+        }
+
+        /**
+         * Getter for <code>completed</code>
+         * @return this.completed
+         */
+        public ArrayList<T> getCompleted() {
+            return this.completed;
+        }
+
+        /**
+         * Getter for <code>failed</code>
+         * @return this.failed
+         */
+        public LinkedHashMap<T, Throwable> getFailed() {
+            return this.failed;
+        }
+
+        /**
+         * Getter for <code>cancelled</code>
+         * @return this.cancelled
+         */
+        public ArrayList<T> getCancelled() {
+            return this.cancelled;
+        }
+
+        /**
+         * @return boolean
+         */
+        public boolean isSuccessful() {
+            return this.failed.isEmpty() && this.cancelled.isEmpty();
+        }
+    }
+}
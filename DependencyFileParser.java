@@ -0,0 +1,734 @@
+/**
+ * DependencyFileParser.java - Memory-mapped reader for class dependency files
+ * Begun 12/04/17
+ * @author Andrew Eissen
+ */
+
+package commandlinecompiler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Dedicated parser for dependency files, replacing the <code>Scanner</code> and per-line
+ * <code>split("\\s+")</code> formerly used by <code>GUIMouseAdapter</code>. The file is
+ * memory-mapped in windows and copied block by block into one reusable byte array, whitespace is
+ * recognized by hand, and each completed line is handed directly to
+ * <code>DirectedGraph.appendLine</code> through a single reused <code>String</code> array. Nothing
+ * is buffered beyond the current line.
+ * <br />
+ * <br />
+ * Class names are interned by their raw bytes, so a name that has been seen before is neither
+ * decoded nor allocated again; each distinct name is turned into a <code>String</code> once. Names
+ * are decoded as UTF-8. Blank lines and runs of whitespace produce no empty class names.
+ * <br />
+ * <br />
+ * For large files, a parallel mode splits the file at line boundaries into chunks that are
+ * tokenized and interned on worker threads into partial buffers of chunk-local keys. The chunks
+ * are then merged in file order, so every class receives the same key it would have received
+ * from a sequential parse.
+ */
+final class DependencyFileParser {
+
+    // Size of each memory-mapped window of the file
+    private static final long WINDOW_SIZE = 1L << 28;
+
+    // Size of the reusable block that mapped bytes are copied into for scanning
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    // Chunks per worker thread in parallel mode, so that uneven chunks even out
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    // Files smaller than this are always parsed sequentially
+    private static final long MIN_PARALLEL_SIZE = 1L << 22;
+
+    // Counters of the most recent parse, useful for throughput readouts
+    private long lineCount;
+    private long tokenCount;
+    private long byteCount;
+
+    // Optional observer told of progress once per block and polled for cancellation
+    private ProgressMonitor progressMonitor;
+
+    // Optional observer told of the duration of each parse
+    private GraphListener graphListener;
+
+    /**
+     * Default constructor
+     */
+    public DependencyFileParser() {
+        this.lineCount = 0;
+        this.tokenCount = 0;
+        this.byteCount = 0;
+        this.graphListener = DirectedGraph.getDefaultGraphListener();
+    }
+
+    /**
+     * Setter for <code>graphListener</code>, <code>null</code> to remove it
+     * @param graphListener
+     * @return void
+     */
+    public void setGraphListener(GraphListener graphListener) {
+        this.graphListener = graphListener;
+    }
+
+    /**
+     * Setter for <code>progressMonitor</code>. A parse whose monitor reports cancellation stops
+     * with a <code>CancellationException</code>, leaving the target graph partially built.
+     * @param progressMonitor
+     * @return void
+     */
+    public void setProgressMonitor(ProgressMonitor progressMonitor) {
+        this.progressMonitor = progressMonitor;
+    }
+
+    /**
+     * Parses the named file into a new graph
+     * @param fileName
+     * @return DirectedGraph<String>
+     * @throws IOException
+     */
+    public DirectedGraph<String> parse(String fileName) throws IOException {
+        DirectedGraph<String> directedGraph = new DirectedGraph<>();
+        this.parse(Paths.get(fileName), directedGraph);
+        return directedGraph;
+    }
+
+    /**
+     * Parses the file, appending every line to the given graph as soon as it is complete
+     * @param file
+     * @param directedGraph
+     * @return void
+     * @throws IOException
+     */
+    public void parse(Path file, DirectedGraph<String> directedGraph) throws IOException {
+        long start = (this.graphListener != null) ? System.nanoTime() : 0;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            NameTable names = new NameTable();
+            ChunkScanner scanner = new ChunkScanner(names, new GraphSink(names, directedGraph),
+                this.progressMonitor);
+
+            scanner.scan(channel, 0, channel.size());
+            this.lineCount = scanner.lineCount;
+            this.tokenCount = scanner.tokenCount;
+            this.byteCount = scanner.byteCount;
+        }
+
+        if (this.graphListener != null) {
+            this.graphListener.parseCompleted(this.byteCount, this.lineCount,
+                System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Parses the file into the given graph using up to <code>parallelism</code> worker threads.
+     * Each chunk is scanned into a <code>PartialGraph</code> holding its distinct class names in
+     * order of first appearance and its lines as runs of chunk-local keys. The calling thread
+     * merges the chunks in file order while later chunks are still being scanned: each new local
+     * name is passed to <code>addVertex</code> in turn, which reproduces the keys of a sequential
+     * parse, and the lines are rewritten into a flat run of edges between global keys without any
+     * further hashing of names. Once every chunk is merged, the runs are laid into the compact
+     * form in one pass by <code>appendEdgeRuns</code>, so the graph is built already compacted
+     * and no <code>LinkedList</code> node is created per edge.
+     * <br />
+     * <br />
+     * At most <code>parallelism + 1</code> chunks are scanned or awaiting their merge at any one
+     * time, and each is dropped as soon as it is merged, so the partial results held beside the
+     * graph amount to a few chunks' worth of names and keys plus eight bytes per edge, rather than
+     * a second copy of the whole file. Files below <code>MIN_PARALLEL_SIZE</code>, or a
+     * <code>parallelism</code> of one, are parsed sequentially.
+     * <br />
+     * <br />
+     * The workers only poll the progress monitor for cancellation, while progress itself is
+     * reported by the merging thread as each chunk is merged.
+     * @param file
+     * @param directedGraph
+     * @param parallelism
+     * @return void
+     * @throws IOException
+     */
+    public void parse(Path file, DirectedGraph<String> directedGraph, int parallelism)
+            throws IOException {
+
+        long startTime = (this.graphListener != null) ? System.nanoTime() : 0;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            if (parallelism <= 1 || size < MIN_PARALLEL_SIZE) {
+                this.parse(file, directedGraph);
+                return;
+            }
+
+            long[] boundaries = DependencyFileParser.findChunkBoundaries(channel,
+                parallelism * CHUNKS_PER_THREAD);
+            ProgressMonitor monitor = this.progressMonitor;
+            ProgressMonitor cancellation = (monitor == null) ? null : monitor::isCancelled;
+            ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+            ArrayDeque<Future<PartialGraph>> chunks = new ArrayDeque<>();
+            ArrayList<int[]> edgeRuns = new ArrayList<>();
+            int submitted = 0;
+
+            this.lineCount = 0;
+            this.tokenCount = 0;
+            this.byteCount = 0;
+
+            try {
+                while (submitted + 1 < boundaries.length || !chunks.isEmpty()) {
+                    while (submitted + 1 < boundaries.length && chunks.size() <= parallelism) {
+                        long start = boundaries[submitted];
+                        long end = boundaries[++submitted];
+                        chunks.add(workers.submit(
+                            () -> PartialGraph.scan(channel, start, end, cancellation)));
+                    }
+
+                    PartialGraph partial = chunks.poll().get();
+                    edgeRuns.add(partial.mergeInto(directedGraph));
+                    this.lineCount += partial.lineCount;
+                    this.tokenCount += partial.tokenCount;
+                    this.byteCount += partial.byteCount;
+
+                    if (monitor != null) {
+                        monitor.parsed(this.byteCount, size, this.lineCount);
+                        if (monitor.isCancelled()) {
+                            throw new CancellationException("Parse cancelled");
+                        }
+                    }
+                }
+                directedGraph.appendEdgeRuns(edgeRuns);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Parse interrupted", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                } else if (e.getCause() instanceof CancellationException) {
+                    throw (CancellationException) e.getCause();
+                }
+                throw new IOException("Parse failed", e.getCause());
+            } finally {
+                workers.shutdownNow();
+            }
+        }
+
+        if (this.graphListener != null) {
+            this.graphListener.parseCompleted(this.byteCount, this.lineCount,
+                System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Splits the file into roughly equal byte ranges, moving each interior boundary forward to
+     * just past the next line break so that no line straddles two chunks
+     * @param channel
+     * @param chunkCount
+     * @return long[] Ascending offsets, starting at zero and ending at the file size
+     * @throws IOException
+     */
+    private static long[] findChunkBoundaries(FileChannel channel, int chunkCount)
+            throws IOException {
+
+        long size = channel.size();
+        long[] boundaries = new long[chunkCount + 1];
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        int count = 1;
+
+        for (int i = 1; i < chunkCount; i++) {
+            long position = Math.max(size * i / chunkCount, boundaries[count - 1]);
+            boolean found = false;
+
+            while (!found && position < size) {
+                probe.clear();
+                int read = channel.read(probe, position);
+                if (read <= 0) {
+                    break;
+                }
+                for (int j = 0; j < read; j++) {
+                    if (DependencyFileParser.isLineBreak(probe.get(j))) {
+                        position += j + 1;
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    position += read;
+                }
+            }
+
+            // Drop empty chunks, which arise when a single line spans several target ranges
+            if (position < size && position > boundaries[count - 1]) {
+                boundaries[count++] = position;
+            }
+        }
+
+        boundaries[count++] = size;
+        return Arrays.copyOf(boundaries, count);
+    }
+
+    /**
+     * Getter for <code>lineCount</code>
+     * @return this.lineCount
+     */
+    public long getLineCount() {
+        return this.lineCount;
+    }
+
+    /**
+     * Getter for <code>tokenCount</code>
+     * @return this.tokenCount
+     */
+    public long getTokenCount() {
+        return this.tokenCount;
+    }
+
+    /**
+     * Getter for <code>byteCount</code>
+     * @return this.byteCount
+     */
+    public long getByteCount() {
+        return this.byteCount;
+    }
+
+    /**
+     * Receives each completed line as the <code>NameTable</code> keys of its class names
+     */
+    private interface LineSink {
+
+        /**
+         * @param keys
+         * @param length
+         * @return void
+         */
+        void acceptLine(int[] keys, int length);
+    }
+
+    /**
+     * Sink of the sequential parse, which forwards lines straight to the graph
+     */
+    private static final class GraphSink implements LineSink {
+
+        private final NameTable names;
+        private final DirectedGraph<String> directedGraph;
+        private String[] line;
+
+        /**
+         * Parameterized constructor
+         * @param names
+         * @param directedGraph
+         */
+        public GraphSink(NameTable names, DirectedGraph<String> directedGraph) {
+            this.names = names;
+            this.directedGraph = directedGraph;
+            this.line = new String[16];
+        }
+
+        @Override
+        public void acceptLine(int[] keys, int length) {
+            if (length > this.line.length) {
+                this.line = new String[keys.length];
+            }
+            for (int i = 0; i < length; i++) {
+                this.line[i] = this.names.getName(keys[i]);
+            }
+            this.directedGraph.appendLine(this.line, length);
+        }
+    }
+
+    /**
+     * Result of scanning a single chunk in parallel mode. Lines are stored back to back in
+     * <code>lines</code>, each as its length followed by the chunk-local keys of its class names.
+     */
+    private static final class PartialGraph implements LineSink {
+
+        private final NameTable names;
+        private final IntStack lines;
+        private long lineCount;
+        private long tokenCount;
+        private long byteCount;
+
+        /**
+         * Default constructor
+         */
+        public PartialGraph() {
+            this.names = new NameTable();
+            this.lines = new IntStack(1024);
+        }
+
+        /**
+         * Scans the given byte range of the file on the calling worker thread
+         * @param channel
+         * @param start
+         * @param end
+         * @param monitor
+         * @return PartialGraph
+         * @throws IOException
+         */
+        public static PartialGraph scan(FileChannel channel, long start, long end,
+                ProgressMonitor monitor) throws IOException {
+
+            PartialGraph partial = new PartialGraph();
+            ChunkScanner scanner = new ChunkScanner(partial.names, partial, monitor);
+
+            scanner.scan(channel, start, end);
+            partial.lineCount = scanner.lineCount;
+            partial.tokenCount = scanner.tokenCount;
+            partial.byteCount = scanner.byteCount;
+            return partial;
+        }
+
+        @Override
+        public void acceptLine(int[] keys, int length) {
+            this.lines.push(length);
+            for (int i = 0; i < length; i++) {
+                this.lines.push(keys[i]);
+            }
+        }
+
+        /**
+         * Adds the chunk's classes to the graph, registering local names in order of first
+         * appearance, and returns its edges between global keys for
+         * <code>DirectedGraph.appendEdgeRuns</code>, as interleaved origin and dependent keys
+         * @param directedGraph
+         * @return int[]
+         */
+        public int[] mergeInto(DirectedGraph<String> directedGraph) {
+            int[] globalKeys = new int[this.names.size()];
+            int edgeCount = 0;
+
+            for (int i = 0; i < globalKeys.length; i++) {
+                globalKeys[i] = directedGraph.addVertex(this.names.getName(i));
+            }
+            for (int position = 0; position < this.lines.size(); ) {
+                int length = this.lines.get(position);
+                edgeCount += Math.max(length - 1, 0);
+                position += length + 1;
+            }
+
+            int[] edges = new int[2 * edgeCount];
+            int edge = 0;
+            for (int position = 0; position < this.lines.size(); ) {
+                int length = this.lines.get(position++);
+                int origin = (length > 0) ? globalKeys[this.lines.get(position)] : 0;
+                for (int i = 1; i < length; i++) {
+                    edges[edge++] = origin;
+                    edges[edge++] = globalKeys[this.lines.get(position + i)];
+                }
+                position += length;
+            }
+            return edges;
+        }
+    }
+
+    /**
+     * Tokenizer over a byte range of the file. The range must begin at the start of a line, and
+     * the last line is flushed at the end of the range whether or not it is terminated.
+     */
+    private static final class ChunkScanner {
+
+        private final NameTable names;
+        private final LineSink sink;
+        private long lineCount;
+        private long tokenCount;
+        private long byteCount;
+        private final ProgressMonitor monitor;
+
+        /**
+         * Parameterized constructor
+         * @param names
+         * @param sink
+         * @param monitor Told of progress after every block, or <code>null</code>
+         */
+        public ChunkScanner(NameTable names, LineSink sink, ProgressMonitor monitor) {
+            this.names = names;
+            this.sink = sink;
+            this.monitor = monitor;
+        }
+
+        /**
+         * Scans bytes <code>start</code> up to but excluding <code>end</code>
+         * @param channel
+         * @param start
+         * @param end
+         * @return void
+         * @throws IOException
+         */
+        public void scan(FileChannel channel, long start, long end) throws IOException {
+            byte[] block = new byte[BLOCK_SIZE];
+            byte[] token = new byte[64];
+            int[] line = new int[16];
+            int tokenLength = 0;
+            int tokenHash = 0;
+            int lineLength = 0;
+
+            for (long position = start; position < end; position += WINDOW_SIZE) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(WINDOW_SIZE, end - position));
+
+                while (window.hasRemaining()) {
+                    int blockLength = Math.min(block.length, window.remaining());
+                    window.get(block, 0, blockLength);
+
+                    for (int i = 0; i < blockLength; i++) {
+                        byte b = block[i];
+
+                        // Any byte other than ASCII whitespace belongs to a class name
+                        if (!DependencyFileParser.isWhitespace(b)) {
+                            if (tokenLength == token.length) {
+                                token = Arrays.copyOf(token, tokenLength * 2);
+                            }
+                            token[tokenLength++] = b;
+                            tokenHash = 31 * tokenHash + b;
+                            continue;
+                        }
+
+                        // A class name has just ended, so add it to the current line
+                        if (tokenLength != 0) {
+                            if (lineLength == line.length) {
+                                line = Arrays.copyOf(line, lineLength * 2);
+                            }
+                            line[lineLength++] = this.names.intern(token, tokenLength, tokenHash);
+                            tokenLength = 0;
+                            tokenHash = 0;
+                        }
+
+                        // A line has just ended, so hand it over
+                        if (DependencyFileParser.isLineBreak(b) && lineLength != 0) {
+                            this.flush(line, lineLength);
+                            lineLength = 0;
+                        }
+                    }
+                    this.byteCount += blockLength;
+
+                    if (this.monitor != null) {
+                        this.monitor.parsed(this.byteCount, end - start, this.lineCount);
+                        if (this.monitor.isCancelled()) {
+                            throw new CancellationException("Parse cancelled");
+                        }
+                    }
+                }
+            }
+
+            // The last line need not be terminated
+            if (tokenLength != 0) {
+                if (lineLength == line.length) {
+                    line = Arrays.copyOf(line, lineLength * 2);
+                }
+                line[lineLength++] = this.names.intern(token, tokenLength, tokenHash);
+            }
+            if (lineLength != 0) {
+                this.flush(line, lineLength);
+            }
+        }
+
+        /**
+         * @param line
+         * @param length
+         * @return void
+         */
+        private void flush(int[] line, int length) {
+            this.sink.acceptLine(line, length);
+            this.tokenCount += length;
+            this.lineCount++;
+        }
+    }
+
+    /**
+     * Open-addressing hash table from the raw bytes of a class name to a dense key, numbered in
+     * order of first appearance, and from that key to the decoded <code>String</code>. It only
+     * lives for the duration of a single parse or chunk.
+     */
+    private static final class NameTable {
+
+        private byte[][] keys;
+        private int[] slotValues;
+        private int[] hashes;
+        private final ArrayList<String> names;
+
+        /**
+         * Default constructor
+         */
+        public NameTable() {
+            this.keys = new byte[1024][];
+            this.slotValues = new int[1024];
+            this.hashes = new int[1024];
+            this.names = new ArrayList<>();
+        }
+
+        /**
+         * Returns the key for the first <code>length</code> bytes of <code>token</code>, decoding
+         * and storing the name only if it has not been seen before
+         * @param token
+         * @param length
+         * @param hash
+         * @return int
+         */
+        public int intern(byte[] token, int length, int hash) {
+            int mask = this.keys.length - 1;
+            int slot = DependencyFileParser.mix(hash) & mask;
+
+            while (this.keys[slot] != null) {
+                byte[] key = this.keys[slot];
+                if (this.hashes[slot] == hash && key.length == length
+                        && Arrays.equals(key, 0, length, token, 0, length)) {
+                    return this.slotValues[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            int value = this.names.size();
+            this.names.add(new String(token, 0, length, StandardCharsets.UTF_8));
+            this.keys[slot] = Arrays.copyOf(token, length);
+            this.slotValues[slot] = value;
+            this.hashes[slot] = hash;
+
+            // Keeps the load factor at or below one half
+            if (this.names.size() * 2 > this.keys.length) {
+                this.resize();
+            }
+            return value;
+        }
+
+        /**
+         * Getter for the name stored under the given key
+         * @param key
+         * @return String
+         */
+        public String getName(int key) {
+            return this.names.get(key);
+        }
+
+        /**
+         * @return int
+         */
+        public int size() {
+            return this.names.size();
+        }
+
+        /**
+         * Doubles the table, reinserting every entry
+         * @return void
+         */
+        private void resize() {
+            byte[][] oldKeys = this.keys;
+            int[] oldValues = this.slotValues;
+            int[] oldHashes = this.hashes;
+            int mask = oldKeys.length * 2 - 1;
+
+            this.keys = new byte[oldKeys.length * 2][];
+            this.slotValues = new int[oldKeys.length * 2];
+            this.hashes = new int[oldKeys.length * 2];
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int slot = DependencyFileParser.mix(oldHashes[i]) & mask;
+                    while (this.keys[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    this.keys[slot] = oldKeys[i];
+                    this.slotValues[slot] = oldValues[i];
+                    this.hashes[slot] = oldHashes[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether the byte separates class names, which only ASCII whitespace does. Every other byte,
+     * control characters included, belongs to a name.
+     * @param b
+     * @return boolean
+     */
+    static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+
+    /**
+     * Whether the byte ends a line, which a bare carriage return does as well as a line feed
+     * @param b
+     * @return boolean
+     */
+    static boolean isLineBreak(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    /**
+     * Finds the next non-blank line at or after <code>position</code> in a file held in memory,
+     * storing the start and end of its first token and the end of the line in
+     * <code>bounds</code>. Lines and tokens are delimited exactly as in a parse, for readers
+     * that must agree with one, such as <code>DependencyFileWatcher</code>.
+     * @param content
+     * @param position
+     * @param bounds
+     * @return int Position following the line, or -1 if no line remains
+     */
+    static int nextLine(byte[] content, int position, int[] bounds) {
+        int[] token = new int[] {0, position};
+
+        while (token[1] < content.length) {
+            int lineEnd = token[1];
+            while (lineEnd < content.length
+                    && !DependencyFileParser.isLineBreak(content[lineEnd])) {
+                lineEnd++;
+            }
+
+            if (DependencyFileParser.nextToken(content, token, lineEnd)) {
+                bounds[0] = token[0];
+                bounds[1] = token[1];
+                bounds[2] = lineEnd;
+                return Math.min(lineEnd + 1, content.length);
+            }
+            token[1] = lineEnd + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Advances <code>token</code> from the end of the previous token to the next token before
+     * <code>limit</code>
+     * @param content
+     * @param token Start and end of the token, the end initially being where to start looking
+     * @param limit
+     * @return boolean Whether a token was found
+     */
+    static boolean nextToken(byte[] content, int[] token, int limit) {
+        int i = token[1];
+        while (i < limit && DependencyFileParser.isWhitespace(content[i])) {
+            i++;
+        }
+        if (i == limit) {
+            return false;
+        }
+
+        token[0] = i;
+        while (i < limit && !DependencyFileParser.isWhitespace(content[i])) {
+            i++;
+        }
+        token[1] = i;
+        return true;
+    }
+
+    /**
+     * Spreads the bits of a polynomial hash so that linear probing behaves well
+     * @param hash
+     * @return int
+     */
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,485 @@
+/**
+ * DependencyFileWatcher.java - Keeps a graph in step with a dependency file as it changes
+ * Begun 12/04/17
+ * @author Andrew Eissen
+ */
+
+package commandlinecompiler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a dependency file with a <code>WatchService</code> and applies each new version of it
+ * to a live <code>DirectedGraph</code> as a diff, adding and removing only the edges that changed
+ * rather than rebuilding the graph. Build systems tend to rewrite such files in several bursts, so
+ * a reload only starts once no further change has been seen for the debounce interval.
+ * <br />
+ * <br />
+ * Every line is hashed, bar its leading class name, and the hashes of all lines sharing an origin
+ * class are summed into one value per origin, stored in <code>lineHashes</code> by vertex key. A
+ * reload reads the file and recomputes these sums in one pass that decodes nothing but origin
+ * names. Only origins whose sum differs, and those whose lines have disappeared, are tokenized in
+ * full and compared edge by edge with their current successors in the graph. Beyond reading and
+ * hashing the file, the cost of a reload is thus proportional to the lines that changed, and the
+ * graph itself receives one <code>removeEdge</code> or <code>insertEdge</code> per changed edge,
+ * both of which are incremental. Lines and class names are found with the scanning helpers of
+ * <code>DependencyFileParser</code>, so the graph kept in step is the one a fresh parse of the
+ * file would build.
+ * <br />
+ * <br />
+ * Edges are added with <code>insertEdge</code>, which unlike <code>addEdge</code> accepts edges
+ * closing a cycle, just as a full build of the file would. A change introducing a cycle, or made
+ * to a graph that already contains one, is thus applied as a diff like any other, and the cycle
+ * is reported by the next sort of the graph. Classes that disappear from the file entirely lose
+ * all their edges but remain as vertices until the next full build.
+ * <br />
+ * <br />
+ * Known limitation: the topological order that <code>DirectedGraph</code> maintains for
+ * <code>addEdge</code> survives a reload only while the graph stays acyclic. An edge closing a
+ * cycle drops it, and later edges are inserted unchecked until an <code>addEdge</code> made
+ * elsewhere establishes it afresh, so multi-class sorts meanwhile traverse the whole graph. The
+ * file is only rebuilt into a new graph, with a <code>GraphBuilder</code>, on the reload following
+ * a failed one.
+ * <br />
+ * <br />
+ * Changes are applied while holding the graph's monitor, so any other thread reading the graph
+ * must synchronize on it as well. The first reload happens as soon as the watcher starts and
+ * compares every line, bringing the graph in step with any change made while it was being built.
+ */
+final class DependencyFileWatcher implements Closeable {
+
+    /**
+     * Observer told of the outcome of each reload, called on the watcher's thread
+     */
+    interface Listener {
+
+        /**
+         * A new version of the file has been applied
+         * @param directedGraph The graph watched, which is a new one if the file was rebuilt
+         * @param addedEdges Zero if the file was rebuilt
+         * @param removedEdges Zero if the file was rebuilt
+         * @param nanos
+         * @return void
+         */
+        void reloaded(DirectedGraph<String> directedGraph, int addedEdges, int removedEdges,
+            long nanos);
+
+        /**
+         * A reload failed. An <code>IOException</code> typically means the file was caught
+         * midway through being replaced, and the next change to it is picked up as usual. Any
+         * other failure may have left the graph part way through a change, so the file is then
+         * rebuilt into a new graph at once, which is reported to <code>reloaded</code> in turn.
+         * Either way the watcher goes on watching.
+         * @param cause
+         * @return void
+         */
+        default void reloadFailed(Exception cause) {}
+    }
+
+    // Default time the file must remain unchanged before it is reloaded
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 300;
+
+    private final Path file;
+    private final long debounceMillis;
+    private final Listener listener;
+
+    // Graph kept in step with the file, replaced only by a full rebuild
+    private DirectedGraph<String> directedGraph;
+
+    // Whether the next reload must rebuild the graph rather than apply a diff to it
+    private boolean rebuildRequired;
+
+    /**
+     * Sum of the hashes of the lines of each origin class as last applied, indexed by vertex key
+     * and zero for a class without lines of its own, or <code>null</code> before the first reload
+     */
+    private long[] lineHashes;
+
+    private WatchService watchService;
+    private Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * Parameterized constructor, uses <code>DEFAULT_DEBOUNCE_MILLIS</code>
+     * @param file
+     * @param directedGraph
+     * @param listener
+     */
+    public DependencyFileWatcher(Path file, DirectedGraph<String> directedGraph,
+            Listener listener) {
+        this(file, directedGraph, listener, DEFAULT_DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * Fully parameterized constructor
+     * @param file
+     * @param directedGraph
+     * @param listener
+     * @param debounceMillis
+     */
+    public DependencyFileWatcher(Path file, DirectedGraph<String> directedGraph,
+            Listener listener, long debounceMillis) {
+        this.file = file.toAbsolutePath();
+        this.directedGraph = directedGraph;
+        this.listener = listener;
+        this.debounceMillis = debounceMillis;
+        this.closed = false;
+    }
+
+    /**
+     * Registers the file's directory with a new <code>WatchService</code> and starts the watcher
+     * thread, which performs the first reload at once. Replacing the file by renaming another
+     * over it is detected as well as rewriting it in place.
+     * @return void
+     * @throws IOException
+     */
+    public void start() throws IOException {
+        this.watchService = this.file.getFileSystem().newWatchService();
+        this.file.getParent().register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+
+        this.thread = new Thread(this::watch, "dependency-file-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stops watching. A reload in progress is completed.
+     * @return void
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        if (this.watchService != null) {
+            this.watchService.close();
+        }
+    }
+
+    /**
+     * Body of the watcher thread. After the first event concerning the file, events are drained
+     * until none has arrived for <code>debounceMillis</code>, and only then is the file reloaded.
+     * @return void
+     */
+    private void watch() {
+        try {
+            this.reloadQuietly();
+
+            while (!this.closed) {
+                if (!this.isRelevant(this.watchService.take())) {
+                    continue;
+                }
+
+                WatchKey key;
+                while ((key = this.watchService.poll(this.debounceMillis,
+                        TimeUnit.MILLISECONDS)) != null) {
+                    this.isRelevant(key);
+                }
+                this.reloadQuietly();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // The watcher has been closed
+        }
+    }
+
+    /**
+     * Drains and resets the key, returning whether any of its events concerned the file. An
+     * overflow means events were lost, so it counts as well.
+     * @param key
+     * @return boolean
+     */
+    private boolean isRelevant(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            relevant |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                || this.file.getFileName().equals(event.context());
+        }
+        key.reset();
+        return relevant;
+    }
+
+    /**
+     * Reloads the file, reporting any failure to the listener rather than letting it end the
+     * watcher thread. After a failure other than a read error, the file is rebuilt instead.
+     * @return void
+     */
+    private void reloadQuietly() {
+        try {
+            this.reload();
+        } catch (IOException e) {
+            this.listener.reloadFailed(e);
+        } catch (RuntimeException e) {
+            this.listener.reloadFailed(e);
+            synchronized (this) {
+                this.rebuildRequired = true;
+            }
+
+            try {
+                this.reload();
+            } catch (IOException | RuntimeException retry) {
+                this.listener.reloadFailed(retry);
+            }
+        }
+    }
+
+    /**
+     * Reads the file and applies whatever has changed since the last reload, as described above
+     * @return void
+     * @throws IOException
+     */
+    public synchronized void reload() throws IOException {
+        long start = System.nanoTime();
+        byte[] content = Files.readAllBytes(this.file);
+        DirectedGraph<String> graph = this.directedGraph;
+
+        synchronized (graph) {
+            int vertexCount = graph.getVertexCount();
+            long[] hashes = new long[vertexCount];
+            HashMap<String, Long> newOrigins = new HashMap<>();
+            int[] bounds = new int[3];
+
+            // First pass, hashes the lines of every origin class
+            for (int position = 0;
+                    (position = DependencyFileParser.nextLine(content, position, bounds)) >= 0; ) {
+                String origin = decode(content, bounds[0], bounds[1]);
+                long hash = hashLine(content, bounds[1], bounds[2]);
+                int key = graph.indexOf(origin);
+
+                if (key >= 0) {
+                    hashes[key] += hash;
+                } else {
+                    newOrigins.merge(origin, hash, Long::sum);
+                }
+            }
+
+            // Origins whose lines have changed, appeared or disappeared
+            boolean[] changed = new boolean[vertexCount];
+            IntStack successors = new IntStack();
+            int changedCount = newOrigins.size();
+
+            for (int key = 0; key < vertexCount; key++) {
+                if (graph.getVertex(key) == null) {
+                    continue;
+                } else if (this.lineHashes == null) {
+                    successors.clear();
+                    graph.pushSuccessors(key, successors);
+                    changed[key] = hashes[key] != 0 || !successors.isEmpty();
+                } else {
+                    long previous = (key < this.lineHashes.length) ? this.lineHashes[key] : 0;
+                    changed[key] = hashes[key] != previous;
+                }
+                changedCount += changed[key] ? 1 : 0;
+            }
+
+            // A failed reload may have left the graph part way through a change
+            int[] counts = new int[2];
+            if (this.rebuildRequired) {
+                graph = this.rebuild(content);
+                this.directedGraph = graph;
+                this.rebuildRequired = false;
+                hashes = new long[0];
+                newOrigins.clear();
+            } else if (changedCount != 0) {
+                this.applyDiff(graph, this.collectDependents(content, graph, changed, newOrigins),
+                    counts);
+            }
+
+            this.lineHashes = this.rehash(content, graph, hashes, newOrigins);
+            this.listener.reloaded(graph, counts[0], counts[1], System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Second pass over the file, tokenizing the lines of changed origins only. Every changed
+     * origin receives an entry, empty if it no longer has any lines.
+     * @param content
+     * @param graph
+     * @param changed
+     * @param newOrigins
+     * @return LinkedHashMap<String, LinkedHashSet<String>>
+     */
+    private LinkedHashMap<String, LinkedHashSet<String>> collectDependents(byte[] content,
+            DirectedGraph<String> graph, boolean[] changed, HashMap<String, Long> newOrigins) {
+
+        LinkedHashMap<String, LinkedHashSet<String>> dependents = new LinkedHashMap<>();
+        for (int key = 0; key < changed.length; key++) {
+            if (changed[key]) {
+                dependents.put(graph.getVertex(key), new LinkedHashSet<>());
+            }
+        }
+        for (String origin : newOrigins.keySet()) {
+            dependents.put(origin, new LinkedHashSet<>());
+        }
+
+        int[] bounds = new int[3];
+        for (int position = 0;
+                (position = DependencyFileParser.nextLine(content, position, bounds)) >= 0; ) {
+            LinkedHashSet<String> set = dependents.get(decode(content, bounds[0], bounds[1]));
+            if (set == null) {
+                continue;
+            }
+
+            int[] token = new int[] {0, bounds[1]};
+            while (DependencyFileParser.nextToken(content, token, bounds[2])) {
+                set.add(decode(content, token[0], token[1]));
+            }
+        }
+        return dependents;
+    }
+
+    /**
+     * Brings the successors of every changed origin in line with its dependents in the file,
+     * removing edges before adding any
+     * @param graph
+     * @param dependents
+     * @param counts Receives the numbers of edges added and removed
+     * @return void
+     */
+    private void applyDiff(DirectedGraph<String> graph,
+            LinkedHashMap<String, LinkedHashSet<String>> dependents, int[] counts) {
+
+        IntStack successors = new IntStack();
+        int removed = 0;
+        int added = 0;
+
+        try {
+            for (Map.Entry<String, LinkedHashSet<String>> entry : dependents.entrySet()) {
+                String origin = entry.getKey();
+                int key = graph.indexOf(origin);
+                if (key < 0) {
+                    continue;
+                }
+
+                successors.clear();
+                graph.pushSuccessors(key, successors);
+                for (int i = 0; i < successors.size(); i++) {
+                    String target = graph.getVertex(successors.get(i));
+                    if (!entry.getValue().contains(target) && graph.removeEdge(origin, target)) {
+                        removed++;
+                    }
+                }
+            }
+        } catch (InvalidClassNameException e) {
+            throw new IllegalStateException("Successor vanished during reload", e);
+        }
+
+        for (Map.Entry<String, LinkedHashSet<String>> entry : dependents.entrySet()) {
+            String origin = entry.getKey();
+            int key = graph.addVertex(origin);
+            LinkedHashSet<String> current = new LinkedHashSet<>();
+
+            successors.clear();
+            graph.pushSuccessors(key, successors);
+            for (int i = 0; i < successors.size(); i++) {
+                current.add(graph.getVertex(successors.get(i)));
+            }
+
+            for (String target : entry.getValue()) {
+                if (!current.contains(target)) {
+                    graph.insertEdge(origin, target);
+                    added++;
+                }
+            }
+        }
+
+        counts[0] = added;
+        counts[1] = removed;
+    }
+
+    /**
+     * Builds the file into a new graph, for a reload following a failed one
+     * @param content
+     * @return DirectedGraph<String>
+     */
+    private DirectedGraph<String> rebuild(byte[] content) {
+        GraphBuilder<String> builder = new GraphBuilder<>();
+        ArrayList<String> line = new ArrayList<>();
+        int[] bounds = new int[3];
+
+        for (int position = 0;
+                (position = DependencyFileParser.nextLine(content, position, bounds)) >= 0; ) {
+            line.clear();
+            line.add(decode(content, bounds[0], bounds[1]));
+
+            int[] token = new int[] {0, bounds[1]};
+            while (DependencyFileParser.nextToken(content, token, bounds[2])) {
+                line.add(decode(content, token[0], token[1]));
+            }
+            builder.accept(line.toArray(new String[0]));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Stores the hashes of the first pass by the keys of the graph as it now stands. Origins
+     * that were new, or all of them after a rebuild, have only now received keys and are hashed
+     * again.
+     * @param content
+     * @param graph
+     * @param hashes
+     * @param newOrigins
+     * @return long[]
+     */
+    private long[] rehash(byte[] content, DirectedGraph<String> graph, long[] hashes,
+            HashMap<String, Long> newOrigins) {
+
+        long[] rehashed = Arrays.copyOf(hashes, graph.getVertexCount());
+        if (hashes.length == 0) {
+            int[] bounds = new int[3];
+            for (int position = 0;
+                    (position = DependencyFileParser.nextLine(content, position, bounds)) >= 0; ) {
+                rehashed[graph.indexOf(decode(content, bounds[0], bounds[1]))] +=
+                    hashLine(content, bounds[1], bounds[2]);
+            }
+        } else {
+            for (Map.Entry<String, Long> entry : newOrigins.entrySet()) {
+                rehashed[graph.indexOf(entry.getKey())] = entry.getValue();
+            }
+        }
+        return rehashed;
+    }
+
+    /**
+     * @param content
+     * @param start
+     * @param end
+     * @return String
+     */
+    private static String decode(byte[] content, int start, int end) {
+        return new String(content, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the bytes of a line following its origin, put through the finalizer
+     * of MurmurHash3 so that sums of several lines do not collide easily. Never returns zero,
+     * which marks the absence of lines.
+     * @param content
+     * @param start
+     * @param end
+     * @return long
+     */
+    private static long hashLine(byte[] content, int start, int end) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ (content[i] & 0xFF)) * 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb3fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (hash == 0) ? 1 : hash;
+    }
+}
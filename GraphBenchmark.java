@@ -0,0 +1,218 @@
+/**
+ * GraphBenchmark.java - Command line benchmark harness for the directed graph
+ * Begun 12/04/17
+ * @author Andrew Eissen
+ */
+
+package commandlinecompiler;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Self-contained benchmark harness, runnable without any build tool or third-party library, kept
+ * alongside the JMH benchmarks of the <code>benchmarks</code> module for a quick reading where
+ * Maven is not at hand. It measures <code>buildDirectedGraph</code>,
+ * <code>inTopologicalOrder</code> (both the <code>ArrayList</code> version and the
+ * allocation-free version writing to a sink) and <code>DependencyFileParser</code>, both
+ * sequentially and split among all available cores, over every <code>GraphGenerator</code> shape
+ * at a range of sizes, following the usual structure of warm-up iterations, whose results are
+ * discarded so that the JIT compiler can settle, and measured iterations. Alongside the mean time
+ * per operation it reports the bytes allocated per operation by the benchmarking thread, so that
+ * allocation regressions show up as numbers just as time regressions do. For the parallel
+ * parse, that leaves out whatever the workers allocate.
+ * <br />
+ * <br />
+ * Usage: <code>java commandlinecompiler.GraphBenchmark [sizes] [shapes] [benchmarks]</code>,
+ * where each argument is a comma-separated list, for example
+ * <code>1000,100000,10000000 CHAIN,POWER_LAW build,sort,sink,parse,pparse</code>. All default to
+ * everything, with sizes of 1K, 10K, 100K and 1M vertices. A 10M-vertex run needs a few gigabytes
+ * of heap, and has not been exercised so far; only sizes of 1K and 100K have been run for every
+ * shape.
+ */
+final class GraphBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final long SEED = 42L;
+
+    // Result of the last operation, kept so that the JIT cannot discard the work as dead code
+    private static Object sink;
+
+    /**
+     * Private constructor, as the class only offers static methods
+     */
+    private GraphBenchmark() {}
+
+    /**
+     * @param args the command line arguments
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        String[] sizes = (args.length > 0) ? args[0].split(",")
+            : new String[] {"1000", "10000", "100000", "1000000"};
+        String[] shapes = (args.length > 1) ? args[1].split(",")
+            : GraphBenchmark.names(GraphGenerator.Shape.values());
+        List<String> benchmarks = Arrays.asList((args.length > 2) ? args[2].split(",")
+            : new String[] {"build", "sort", "sink", "parse", "pparse"});
+
+        System.out.printf("%-8s %-10s %10s %12s %12s %14s%n", "bench", "shape", "vertices",
+            "edges", "ms/op", "MB alloc/op");
+
+        for (String shapeName : shapes) {
+            GraphGenerator.Shape shape = GraphGenerator.Shape.valueOf(shapeName.trim());
+
+            for (String size : sizes) {
+                int vertexCount = Integer.parseInt(size.trim());
+                ArrayList<Integer[]> lines = GraphGenerator.generate(shape, vertexCount, SEED);
+                long edgeCount = GraphGenerator.countEdges(lines);
+
+                if (benchmarks.contains("build")) {
+                    GraphBenchmark.report("build", shape, vertexCount, edgeCount,
+                        GraphBenchmark.measure(() -> {
+                            DirectedGraph<Integer> directedGraph = new DirectedGraph<>();
+                            directedGraph.buildDirectedGraph(lines);
+                            directedGraph.compact();
+                            sink = directedGraph;
+                        }));
+                }
+
+                if (benchmarks.contains("sort")) {
+                    DirectedGraph<Integer> directedGraph = new DirectedGraph<>();
+                    directedGraph.buildDirectedGraph(lines);
+                    directedGraph.compact();
+
+                    // Every iteration must perform the traversal rather than hit the cache
+                    directedGraph.setQueryCacheLimits(0, 0);
+
+                    GraphBenchmark.report("sort", shape, vertexCount, edgeCount,
+                        GraphBenchmark.measure(() -> {
+                            try {
+                                sink = directedGraph.inTopologicalOrder(0);
+                            } catch (CycleOccurrenceException e) {
+                                sink = e.getCycles();
+                            }
+                        }));
+                }
+
+                if (benchmarks.contains("sink")) {
+                    DirectedGraph<Integer> directedGraph = new DirectedGraph<>();
+                    directedGraph.buildDirectedGraph(lines);
+                    directedGraph.compact();
+                    long[] checksum = new long[1];
+
+                    // Steady state allocation should be zero once the workspace has grown
+                    GraphBenchmark.report("sink", shape, vertexCount, edgeCount,
+                        GraphBenchmark.measure(() -> {
+                            try {
+                                directedGraph.inTopologicalOrder(0, v -> checksum[0] += v);
+                            } catch (CycleOccurrenceException e) {
+                                checksum[0]++;
+                            }
+                        }));
+                    sink = checksum;
+                }
+
+                if (benchmarks.contains("parse") || benchmarks.contains("pparse")) {
+                    Path file = Files.createTempFile("graph-benchmark", ".txt");
+                    try {
+                        GraphGenerator.write(lines, file);
+                        if (benchmarks.contains("parse")) {
+                            GraphBenchmark.report("parse", shape, vertexCount, edgeCount,
+                                GraphBenchmark.measure(() -> {
+                                    sink = new DependencyFileParser().parse(file.toString());
+                                }));
+                        }
+                        if (benchmarks.contains("pparse")) {
+                            GraphBenchmark.report("pparse", shape, vertexCount, edgeCount,
+                                GraphBenchmark.measure(() -> {
+                                    DirectedGraph<String> graph = new DirectedGraph<>();
+                                    new DependencyFileParser().parse(file, graph,
+                                        Runtime.getRuntime().availableProcessors());
+                                    sink = graph;
+                                }));
+                        }
+                    } finally {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A single benchmarked operation
+     */
+    private interface Operation {
+
+        /**
+         * @return void
+         * @throws Exception
+         */
+        void run() throws Exception;
+    }
+
+    /**
+     * Runs the warm-up and measured iterations of the operation
+     * @param operation
+     * @return double[] Mean milliseconds and mean allocated bytes per measured iteration
+     * @throws Exception
+     */
+    private static double[] measure(Operation operation) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            operation.run();
+        }
+
+        long allocatedBefore = GraphBenchmark.allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            operation.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = GraphBenchmark.allocatedBytes() - allocatedBefore;
+
+        return new double[] {elapsed / 1e6 / MEASURED_ITERATIONS,
+            (double) allocated / MEASURED_ITERATIONS};
+    }
+
+    /**
+     * Bytes allocated so far by the current thread, or -1 if the JVM cannot tell
+     * @return long
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    /**
+     * @param benchmark
+     * @param shape
+     * @param vertexCount
+     * @param edgeCount
+     * @param result
+     * @return void
+     */
+    private static void report(String benchmark, GraphGenerator.Shape shape, int vertexCount,
+            long edgeCount, double[] result) {
+        System.out.printf("%-8s %-10s %10d %12d %12.3f %14.3f%n", benchmark, shape, vertexCount,
+            edgeCount, result[0], result[1] / 1e6);
+    }
+
+    /**
+     * @param shapes
+     * @return String[]
+     */
+    private static String[] names(GraphGenerator.Shape[] shapes) {
+        String[] names = new String[shapes.length];
+        for (int i = 0; i < shapes.length; i++) {
+            names[i] = shapes[i].name();
+        }
+        return names;
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * GraphBuilder.java - Incremental construction of a DirectedGraph from streamed input
+ * Begun 12/04/17
+ * @author Andrew Eissen
+ */
+
+package commandlinecompiler;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Streaming counterpart of <code>DirectedGraph.buildDirectedGraph</code>. Where that method needs
+ * every line of input collected into an <code>ArrayList</code> of arrays first, roughly doubling
+ * the peak heap of a large build, the builder adds each line to the graph the moment it arrives,
+ * interning its classes and appending its edges, so that nothing outlives the line but the graph
+ * itself. Lines may be supplied one at a time through either <code>accept</code> method, or drawn
+ * from an <code>Iterator</code> or a <code>Stream</code>, for example one produced by
+ * <code>Files.lines</code>.
+ * <br />
+ * <br />
+ * As with <code>buildDirectedGraph</code>, the first class of each line is the origin and the rest
+ * are its dependents, cycles are accepted, and classes receive their keys in order of first
+ * appearance, so both routes produce identical graphs from the same lines. A builder is not
+ * thread-safe; a parallel <code>Stream</code> is consumed in encounter order on one thread at a
+ * time.
+ */
+final class GraphBuilder<T> implements Consumer<T[]> {
+
+    private final DirectedGraph<T> directedGraph;
+
+    // Lines added so far, and when the first was added, for the graph's listener
+    private long lineCount;
+    private long startTime;
+
+    // Whether build has been called, after which the builder refuses further lines
+    private boolean built;
+
+    /**
+     * Default constructor, builds a new, empty graph
+     */
+    public GraphBuilder() {
+        this(new DirectedGraph<>());
+    }
+
+    /**
+     * Parameterized constructor, adds to an existing graph as <code>buildDirectedGraph</code>
+     * would
+     * @param directedGraph
+     */
+    public GraphBuilder(DirectedGraph<T> directedGraph) {
+        this.directedGraph = directedGraph;
+        this.lineCount = 0;
+        this.startTime = (directedGraph.getGraphListener() != null) ? System.nanoTime() : 0;
+        this.built = false;
+    }
+
+    /**
+     * Adds one line of input, its first element being the origin class. Empty lines are ignored.
+     * @param line
+     * @return void
+     */
+    @Override
+    public void accept(T[] line) {
+        this.ensureNotBuilt();
+        if (line.length != 0) {
+            this.directedGraph.appendLine(line, line.length);
+            this.lineCount++;
+        }
+    }
+
+    /**
+     * Adds one line of input given as its origin class and the classes depending on it. The
+     * array is only read, element by element, and is neither stored nor exposed, so handing it on
+     * to <code>appendLine</code> cannot pollute the heap.
+     * @param origin
+     * @param dependents
+     * @return GraphBuilder
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public final GraphBuilder<T> accept(T origin, T... dependents) {
+        this.ensureNotBuilt();
+        this.directedGraph.appendLine(origin, dependents);
+        this.lineCount++;
+        return this;
+    }
+
+    /**
+     * Adds every remaining line of the iterator
+     * @param lines
+     * @return GraphBuilder
+     */
+    public GraphBuilder<T> acceptAll(Iterator<? extends T[]> lines) {
+        while (lines.hasNext()) {
+            this.accept(lines.next());
+        }
+        return this;
+    }
+
+    /**
+     * Adds every line of the stream in encounter order, consuming the stream
+     * @param lines
+     * @return GraphBuilder
+     */
+    public GraphBuilder<T> acceptAll(Stream<? extends T[]> lines) {
+        lines.forEachOrdered(this);
+        return this;
+    }
+
+    /**
+     * Completes the build, reporting it to the graph's listener like
+     * <code>buildDirectedGraph</code>, and returns the graph
+     * @return DirectedGraph
+     */
+    public DirectedGraph<T> build() {
+        this.ensureNotBuilt();
+        this.built = true;
+
+        GraphListener graphListener = this.directedGraph.getGraphListener();
+        if (graphListener != null) {
+            graphListener.buildCompleted(this.lineCount, System.nanoTime() - this.startTime);
+        }
+        return this.directedGraph;
+    }
+
+    /**
+     * Getter for <code>lineCount</code>
+     * @return this.lineCount
+     */
+    public long getLineCount() {
+        return this.lineCount;
+    }
+
+    /**
+     * @return void
+     */
+    private void ensureNotBuilt() {
+        if (this.built) {
+            throw new IllegalStateException("Graph already built");
+        }
+    }
+}
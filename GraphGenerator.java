@@ -0,0 +1,231 @@
+/**
+ * GraphGenerator.java - Synthetic dependency graphs for benchmarking
+ * Begun 12/04/17
+ * @author Andrew Eissen
+ */
+
+package commandlinecompiler;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Produces synthetic dependency inputs in the same shape <code>buildDirectedGraph</code> accepts,
+ * an <code>ArrayList</code> of arrays whose first element is the origin class and the rest its
+ * dependents. Vertex 0 is always a class from which the bulk of the graph is reachable, so it is
+ * the natural starting point for sort benchmarks. All shapes are deterministic for a given seed.
+ * The benchmarks ask for up to 10M vertices, though no shape has yet been generated beyond 1M.
+ */
+final class GraphGenerator {
+
+    /**
+     * The graph shapes available
+     */
+    enum Shape {
+
+        // One long dependency chain, 0 -> 1 -> 2 -> ...
+        CHAIN,
+
+        // A single class upon which every other class depends directly
+        FAN_OUT,
+
+        // Layers of roughly the square root of the vertex count, each vertex feeding three random
+        // vertices of the next layer
+        LAYERED,
+
+        // Preferential attachment, producing a few "utility classes" with enormous fan-out
+        POWER_LAW,
+
+        // Layered graph with a sprinkling of back edges, so that sorts run into cycles
+        CYCLIC
+    }
+
+    // Dependents per vertex for the layered and power-law shapes
+    private static final int DEGREE = 3;
+
+    /**
+     * Private constructor, as the class only offers static methods
+     */
+    private GraphGenerator() {}
+
+    /**
+     * Generates the input lines of a graph of the given shape and vertex count
+     * @param shape
+     * @param vertexCount
+     * @param seed
+     * @return ArrayList<Integer[]>
+     */
+    public static ArrayList<Integer[]> generate(Shape shape, int vertexCount, long seed) {
+        Random random = new Random(seed);
+
+        switch (shape) {
+            case CHAIN:
+                return GraphGenerator.chain(vertexCount);
+            case FAN_OUT:
+                return GraphGenerator.fanOut(vertexCount);
+            case LAYERED:
+                return GraphGenerator.layered(vertexCount, random, 0);
+            case POWER_LAW:
+                return GraphGenerator.powerLaw(vertexCount, random);
+            default:
+                return GraphGenerator.layered(vertexCount, random, Math.max(vertexCount / 1000, 1));
+        }
+    }
+
+    /**
+     * Writes the lines to a whitespace-delimited text file as read by
+     * <code>DependencyFileParser</code>, naming vertex <code>i</code> as <code>Ci</code>
+     * @param lines
+     * @param file
+     * @return void
+     * @throws IOException
+     */
+    public static void write(ArrayList<Integer[]> lines, Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (Integer[] line : lines) {
+                for (int i = 0; i < line.length; i++) {
+                    if (i != 0) {
+                        writer.write(' ');
+                    }
+                    writer.write('C');
+                    writer.write(Integer.toString(line[i]));
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Number of edges described by the lines
+     * @param lines
+     * @return long
+     */
+    public static long countEdges(ArrayList<Integer[]> lines) {
+        long edges = 0;
+        for (Integer[] line : lines) {
+            edges += line.length - 1;
+        }
+        return edges;
+    }
+
+    /**
+     * @param vertexCount
+     * @return ArrayList<Integer[]>
+     */
+    private static ArrayList<Integer[]> chain(int vertexCount) {
+        ArrayList<Integer[]> lines = new ArrayList<>(vertexCount);
+
+        for (int i = 0; i + 1 < vertexCount; i++) {
+            lines.add(new Integer[] {i, i + 1});
+        }
+        return lines;
+    }
+
+    /**
+     * @param vertexCount
+     * @return ArrayList<Integer[]>
+     */
+    private static ArrayList<Integer[]> fanOut(int vertexCount) {
+        ArrayList<Integer[]> lines = new ArrayList<>(1);
+        Integer[] line = new Integer[vertexCount];
+
+        for (int i = 0; i < vertexCount; i++) {
+            line[i] = i;
+        }
+        lines.add(line);
+        return lines;
+    }
+
+    /**
+     * Layered graph in which vertex 0 alone forms the first layer and feeds every vertex of the
+     * second. Each back edge, if requested, leads from a random vertex to a random vertex of an
+     * earlier layer.
+     * @param vertexCount
+     * @param random
+     * @param backEdges
+     * @return ArrayList<Integer[]>
+     */
+    private static ArrayList<Integer[]> layered(int vertexCount, Random random, int backEdges) {
+        ArrayList<Integer[]> lines = new ArrayList<>(vertexCount);
+        int width = Math.max((int) Math.sqrt(vertexCount), 1);
+
+        // Vertex 0 precedes the first full layer, 1 through width
+        Integer[] root = new Integer[Math.min(width, vertexCount - 1) + 1];
+        for (int i = 0; i < root.length; i++) {
+            root[i] = i;
+        }
+        lines.add(root);
+
+        for (int i = 1; i < vertexCount; i++) {
+            int layerStart = ((i - 1) / width) * width + 1;
+            int nextStart = layerStart + width;
+            if (nextStart >= vertexCount) {
+                continue;
+            }
+
+            int nextWidth = Math.min(width, vertexCount - nextStart);
+            Integer[] line = new Integer[DEGREE + 1];
+            line[0] = i;
+            for (int d = 1; d <= DEGREE; d++) {
+                line[d] = nextStart + random.nextInt(nextWidth);
+            }
+            lines.add(line);
+        }
+
+        for (int b = 0; b < backEdges; b++) {
+            int from = width + 1 + random.nextInt(Math.max(vertexCount - width - 1, 1));
+            int to = 1 + random.nextInt(Math.max(((from - 1) / width) * width, 1));
+            if (from < vertexCount && to < from) {
+                lines.add(new Integer[] {from, to});
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Preferential attachment: each new class picks <code>DEGREE</code> prerequisites among the
+     * earlier classes with probability proportional to how often they have been picked before.
+     * Sampling uniformly from the list of all edge endpoints achieves exactly that.
+     * @param vertexCount
+     * @param random
+     * @return ArrayList<Integer[]>
+     */
+    private static ArrayList<Integer[]> powerLaw(int vertexCount, Random random) {
+        ArrayList<IntStack> dependents = new ArrayList<>(vertexCount);
+        IntStack endpoints = new IntStack(vertexCount * (DEGREE + 1));
+
+        for (int i = 0; i < vertexCount; i++) {
+            dependents.add(null);
+            if (i == 0) {
+                endpoints.push(0);
+                continue;
+            }
+
+            for (int d = 0; d < DEGREE; d++) {
+                int prerequisite = endpoints.get(random.nextInt(endpoints.size()));
+                if (dependents.get(prerequisite) == null) {
+                    dependents.set(prerequisite, new IntStack(4));
+                }
+                dependents.get(prerequisite).push(i);
+                endpoints.push(prerequisite);
+            }
+            endpoints.push(i);
+        }
+
+        ArrayList<Integer[]> lines = new ArrayList<>(vertexCount);
+        for (int i = 0; i < vertexCount; i++) {
+            IntStack list = dependents.get(i);
+            Integer[] line = new Integer[(list == null) ? 1 : list.size() + 1];
+            line[0] = i;
+            for (int d = 1; d < line.length; d++) {
+                line[d] = list.get(d - 1);
+            }
+            lines.add(line);
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * GraphListener.java - Observer of timings and counts reported by the graph and the parser
+ * Begun 12/04/17
+ * @author Andrew Eissen
+ */
+
+package commandlinecompiler;
+
+/**
+ * Instrumentation callback of <code>DirectedGraph</code> and <code>DependencyFileParser</code>.
+ * Each completed phase of work is reported once, with its duration in nanoseconds. Both classes
+ * only read the clock if a listener is present, so an absent listener costs a single
+ * <code>null</code> check per operation.
+ * <br />
+ * <br />
+ * Graphs and parsers pick up <code>DirectedGraph.getDefaultGraphListener</code> when created,
+ * and may be given a different listener afterwards. Queries against a shared graph may report
+ * from several threads at once, so implementations must be thread-safe. All methods do nothing by
+ * default.
+ */
+interface GraphListener {
+
+    /**
+     * A dependency file has been parsed into a graph
+     * @param bytes
+     * @param lines
+     * @param nanos
+     * @return void
+     */
+    default void parseCompleted(long bytes, long lines, long nanos) {}
+
+    /**
+     * <code>buildDirectedGraph</code> has added the given number of lines
+     * @param lines
+     * @param nanos
+     * @return void
+     */
+    default void buildCompleted(long lines, long nanos) {}
+
+    /**
+     * The graph has been frozen into compact form, which every build goes through before it is
+     * first queried or saved
+     * @param vertices
+     * @param edges
+     * @param nanos
+     * @return void
+     */
+    default void compacted(int vertices, int edges, long nanos) {}
+
+    /**
+     * A topological sort has completed
+     * @param vertices Number of vertices in the order, all of which the sort visited
+     * @param nanos
+     * @param cached Whether the order came from the query cache without any traversal
+     * @return void
+     */
+    default void queryCompleted(int vertices, long nanos, boolean cached) {}
+
+    /**
+     * An operation has been refused because of a cycle
+     * @param cycles Number of cycles reported, or zero if they were not enumerated
+     * @return void
+     */
+    default void cycleDetected(int cycles) {}
+}
@@ -0,0 +1,254 @@
+/**
+ * GraphMetrics.java - Counters and histograms of graph activity, exported through JMX
+ * Begun 12/04/17
+ * @author Andrew Eissen
+ */
+
+package commandlinecompiler;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Standard <code>GraphListener</code> that aggregates everything reported by graphs and parsers
+ * into thread-safe counters and <code>Histogram</code>s, and exposes the results as the
+ * <code>GraphMetricsMBean</code>. Metrics are off unless <code>install</code> is called, which
+ * the command line and GUI front ends do when started with
+ * <code>-Dcommandlinecompiler.metrics=true</code>.
+ */
+final class GraphMetrics implements GraphListener, GraphMetricsMBean {
+
+    // Name under which the installed instance is registered with the platform MBean server
+    public static final String OBJECT_NAME = "commandlinecompiler:type=GraphMetrics";
+
+    // System property enabling metrics in the front ends
+    public static final String ENABLE_PROPERTY = "commandlinecompiler.metrics";
+
+    // Instance installed as the default listener, if any
+    private static GraphMetrics installed;
+
+    private final LongAdder bytesParsed;
+    private final LongAdder linesParsed;
+    private final Histogram parseNanos;
+    private final Histogram buildNanos;
+    private final Histogram compactionNanos;
+    private volatile int vertexCount;
+    private volatile int edgeCount;
+    private final Histogram queryNanos;
+    private final LongAdder cachedQueries;
+    private final Histogram verticesVisited;
+    private final LongAdder cycleDetections;
+
+    /**
+     * Default constructor
+     */
+    public GraphMetrics() {
+        this.bytesParsed = new LongAdder();
+        this.linesParsed = new LongAdder();
+        this.parseNanos = new Histogram();
+        this.buildNanos = new Histogram();
+        this.compactionNanos = new Histogram();
+        this.queryNanos = new Histogram();
+        this.cachedQueries = new LongAdder();
+        this.verticesVisited = new Histogram();
+        this.cycleDetections = new LongAdder();
+    }
+
+    /**
+     * Returns the process-wide instance, creating it on first use, registering it with the
+     * platform MBean server and making it the default listener of graphs and parsers created from
+     * then on
+     * @return GraphMetrics
+     */
+    public static synchronized GraphMetrics install() {
+        if (installed == null) {
+            installed = new GraphMetrics();
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                server.registerMBean(installed, new ObjectName(OBJECT_NAME));
+            } catch (JMException e) {
+                // The metrics remain available to the caller even if JMX refuses them
+            }
+            DirectedGraph.setDefaultGraphListener(installed);
+        }
+        return installed;
+    }
+
+    /**
+     * Calls <code>install</code> if the system property <code>ENABLE_PROPERTY</code> is set to
+     * <code>true</code>
+     * @return GraphMetrics The installed instance, or <code>null</code> if metrics are off
+     */
+    public static GraphMetrics installIfEnabled() {
+        return Boolean.getBoolean(ENABLE_PROPERTY) ? GraphMetrics.install() : null;
+    }
+
+    @Override
+    public void parseCompleted(long bytes, long lines, long nanos) {
+        this.bytesParsed.add(bytes);
+        this.linesParsed.add(lines);
+        this.parseNanos.record(nanos);
+    }
+
+    @Override
+    public void buildCompleted(long lines, long nanos) {
+        this.buildNanos.record(nanos);
+    }
+
+    @Override
+    public void compacted(int vertices, int edges, long nanos) {
+        this.compactionNanos.record(nanos);
+        this.vertexCount = vertices;
+        this.edgeCount = edges;
+    }
+
+    @Override
+    public void queryCompleted(int vertices, long nanos, boolean cached) {
+        this.queryNanos.record(nanos);
+        if (cached) {
+            this.cachedQueries.increment();
+        } else {
+            this.verticesVisited.record(vertices);
+        }
+    }
+
+    @Override
+    public void cycleDetected(int cycles) {
+        this.cycleDetections.increment();
+    }
+
+    @Override
+    public long getParseCount() {
+        return this.parseNanos.getCount();
+    }
+
+    @Override
+    public long getBytesParsed() {
+        return this.bytesParsed.sum();
+    }
+
+    @Override
+    public long getLinesParsed() {
+        return this.linesParsed.sum();
+    }
+
+    @Override
+    public double getParseTimeMeanMillis() {
+        return this.parseNanos.getMean() / 1e6;
+    }
+
+    @Override
+    public double getParseTimeMaxMillis() {
+        return this.parseNanos.getMax() / 1e6;
+    }
+
+    @Override
+    public long getBuildCount() {
+        return this.buildNanos.getCount();
+    }
+
+    @Override
+    public double getBuildTimeMeanMillis() {
+        return this.buildNanos.getMean() / 1e6;
+    }
+
+    @Override
+    public long getCompactionCount() {
+        return this.compactionNanos.getCount();
+    }
+
+    @Override
+    public double getCompactionTimeMeanMillis() {
+        return this.compactionNanos.getMean() / 1e6;
+    }
+
+    @Override
+    public int getVertexCount() {
+        return this.vertexCount;
+    }
+
+    @Override
+    public int getEdgeCount() {
+        return this.edgeCount;
+    }
+
+    @Override
+    public long getQueryCount() {
+        return this.queryNanos.getCount();
+    }
+
+    @Override
+    public long getCachedQueryCount() {
+        return this.cachedQueries.sum();
+    }
+
+    @Override
+    public double getQueryTimeMeanMicros() {
+        return this.queryNanos.getMean() / 1e3;
+    }
+
+    @Override
+    public double getQueryTimeMedianMicros() {
+        return this.queryNanos.getPercentile(0.5) / 1e3;
+    }
+
+    @Override
+    public double getQueryTime99thPercentileMicros() {
+        return this.queryNanos.getPercentile(0.99) / 1e3;
+    }
+
+    @Override
+    public double getQueryTimeMaxMicros() {
+        return this.queryNanos.getMax() / 1e3;
+    }
+
+    @Override
+    public long getVerticesVisited() {
+        return this.verticesVisited.getSum();
+    }
+
+    @Override
+    public double getVerticesVisitedMean() {
+        return this.verticesVisited.getMean();
+    }
+
+    @Override
+    public long getVerticesVisited99thPercentile() {
+        return this.verticesVisited.getPercentile(0.99);
+    }
+
+    @Override
+    public long getCycleDetectionCount() {
+        return this.cycleDetections.sum();
+    }
+
+    @Override
+    public void reset() {
+        this.bytesParsed.reset();
+        this.linesParsed.reset();
+        this.parseNanos.reset();
+        this.buildNanos.reset();
+        this.compactionNanos.reset();
+        this.queryNanos.reset();
+        this.cachedQueries.reset();
+        this.verticesVisited.reset();
+        this.cycleDetections.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("parses=%d (%,d lines, mean %.1f ms), builds=%d (mean %.1f ms), "
+            + "compactions=%d (mean %.1f ms, %,d vertices, %,d edges), queries=%d (%d cached, "
+            + "mean %.1f us, p50 %.1f us, p99 %.1f us, max %.1f us, mean %.1f vertices visited), "
+            + "cycles=%d", this.getParseCount(), this.getLinesParsed(),
+            this.getParseTimeMeanMillis(), this.getBuildCount(), this.getBuildTimeMeanMillis(),
+            this.getCompactionCount(), this.getCompactionTimeMeanMillis(), this.getVertexCount(),
+            this.getEdgeCount(), this.getQueryCount(), this.getCachedQueryCount(),
+            this.getQueryTimeMeanMicros(), this.getQueryTimeMedianMicros(),
+            this.getQueryTime99thPercentileMicros(), this.getQueryTimeMaxMicros(),
+            this.getVerticesVisitedMean(), this.getCycleDetectionCount());
+    }
+}
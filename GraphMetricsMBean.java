@@ -0,0 +1,129 @@
+/**
+ * GraphMetricsMBean.java - JMX management interface of GraphMetrics
+ * Begun 12/04/17
+ * @author Andrew Eissen
+ */
+
+package commandlinecompiler;
+
+/**
+ * Attributes and operations of <code>GraphMetrics</code> as seen through JMX, for example in
+ * JConsole or VisualVM. The standard MBean conventions require this interface, unlike the rest of
+ * the package, to be public. Durations are given in milliseconds for the bulk phases and in
+ * microseconds for individual queries.
+ */
+public interface GraphMetricsMBean {
+
+    /**
+     * @return long
+     */
+    long getParseCount();
+
+    /**
+     * @return long
+     */
+    long getBytesParsed();
+
+    /**
+     * @return long
+     */
+    long getLinesParsed();
+
+    /**
+     * @return double
+     */
+    double getParseTimeMeanMillis();
+
+    /**
+     * @return double
+     */
+    double getParseTimeMaxMillis();
+
+    /**
+     * @return long
+     */
+    long getBuildCount();
+
+    /**
+     * @return double
+     */
+    double getBuildTimeMeanMillis();
+
+    /**
+     * @return long
+     */
+    long getCompactionCount();
+
+    /**
+     * @return double
+     */
+    double getCompactionTimeMeanMillis();
+
+    /**
+     * Number of vertices as of the most recent compaction
+     * @return int
+     */
+    int getVertexCount();
+
+    /**
+     * Number of edges as of the most recent compaction
+     * @return int
+     */
+    int getEdgeCount();
+
+    /**
+     * @return long
+     */
+    long getQueryCount();
+
+    /**
+     * @return long
+     */
+    long getCachedQueryCount();
+
+    /**
+     * @return double
+     */
+    double getQueryTimeMeanMicros();
+
+    /**
+     * @return double
+     */
+    double getQueryTimeMedianMicros();
+
+    /**
+     * @return double
+     */
+    double getQueryTime99thPercentileMicros();
+
+    /**
+     * @return double
+     */
+    double getQueryTimeMaxMicros();
+
+    /**
+     * @return long
+     */
+    long getVerticesVisited();
+
+    /**
+     * @return double
+     */
+    double getVerticesVisitedMean();
+
+    /**
+     * @return long
+     */
+    long getVerticesVisited99thPercentile();
+
+    /**
+     * @return long
+     */
+    long getCycleDetectionCount();
+
+    /**
+     * Discards every recorded value
+     * @return void
+     */
+    void reset();
+}
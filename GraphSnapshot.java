@@ -0,0 +1,487 @@
+/**
+ * GraphSnapshot.java - Binary persistence of built directed graphs
+ * Begun 12/04/17
+ * @author Andrew Eissen
+ */
+
+package commandlinecompiler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Saves a built <code>DirectedGraph</code> of class names to a compact, versioned binary file and
+ * loads it back, so that large graphs need not be re-parsed from text on every launch. All values
+ * are little-endian. The file consists of a fixed header followed by the payload:
+ * <pre>
+ *   header:  int magic, int version, long payload length, long CRC-32 of the payload,
+ *            long size and long modification time in nanoseconds of the source file, or -1
+ *   payload: int vertex count, int edge count, int slot count,
+ *            per vertex: int byte length (-1 if removed) and UTF-8 bytes, zero-padded to 4 bytes,
+ *            int[slot count] name index, int[vertex count + 1] offsets, int[edge count] targets
+ * </pre>
+ * The name index is an open-addressing hash table built at save time, which the loaded graph
+ * probes directly rather than hashing every name into a fresh <code>HashMap</code>. The edge
+ * arrays are those of <code>CompactAdjacency</code> and are copied out of a memory-mapped
+ * <code>FileChannel</code> in bulk. Snapshots whose checksum, header or structure do not match
+ * are rejected with an <code>IOException</code>.
+ * <br />
+ * <br />
+ * A snapshot saved by <code>loadOrParse</code> records the size and modification time of the
+ * dependency file as they were before it was parsed, and is only used again while both are
+ * exactly the same. Comparing for equality, rather than checking that the snapshot is newer,
+ * also catches a file rewritten within the same tick of a coarse file system clock, unless its
+ * size is unchanged as well. As the whole snapshot is mapped at once, it may not exceed
+ * <code>Integer.MAX_VALUE</code> bytes. <code>save</code> checks this before writing anything,
+ * so a graph too large for a snapshot is simply parsed on every load.
+ */
+final class GraphSnapshot {
+
+    // "DGSN" in ASCII
+    private static final int MAGIC = 0x4E534744;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 40;
+
+    // Size of the buffer used when writing
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    // Suffix of the snapshot saved next to each input file by loadOrParse
+    public static final String SUFFIX = ".snapshot";
+
+    /**
+     * Private constructor, as the class only offers static methods
+     */
+    private GraphSnapshot() {}
+
+    /**
+     * Writes the graph to the file, replacing any existing contents. The graph is compacted first.
+     * @param directedGraph
+     * @param file
+     * @return void
+     * @throws IOException If the snapshot would be too large to load, or cannot be written
+     */
+    public static void save(DirectedGraph<String> directedGraph, Path file) throws IOException {
+        GraphSnapshot.save(directedGraph, file, -1, -1);
+    }
+
+    /**
+     * Overloaded version of <code>save</code> recording the size and modification time of the
+     * dependency file the graph was parsed from
+     * @param directedGraph
+     * @param file
+     * @param sourceSize
+     * @param sourceModified
+     * @return void
+     * @throws IOException If the snapshot would be too large to load, or cannot be written
+     */
+    private static void save(DirectedGraph<String> directedGraph, Path file, long sourceSize,
+            long sourceModified) throws IOException {
+        CompactAdjacency adjacency = directedGraph.getCompactAdjacency();
+        int vertexCount = directedGraph.getVertexCount();
+
+        // Names are padded once, after the last of them, and every other field is an int
+        long nameBytes = 0;
+        for (int i = 0; i < vertexCount; i++) {
+            String vertex = directedGraph.getVertex(i);
+            nameBytes += (vertex == null) ? 0 : GraphSnapshot.utf8Length(vertex);
+        }
+        long fixedInts = 3L + vertexCount + DirectedGraph.slotCount(vertexCount)
+            + (vertexCount + 1L) + adjacency.getEdgeCount();
+        if (HEADER_SIZE + ((nameBytes + 3) & ~3L) + 4 * fixedInts > Integer.MAX_VALUE) {
+            throw new IOException("Graph too large for a snapshot");
+        }
+
+        int[] slots = directedGraph.buildSlots();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            SnapshotWriter writer = new SnapshotWriter(channel, sourceSize, sourceModified);
+            writer.writeInt(vertexCount);
+            writer.writeInt(adjacency.getEdgeCount());
+            writer.writeInt(slots.length);
+
+            for (int i = 0; i < vertexCount; i++) {
+                String vertex = directedGraph.getVertex(i);
+                if (vertex == null) {
+                    writer.writeInt(-1);
+                } else {
+                    byte[] bytes = vertex.getBytes(StandardCharsets.UTF_8);
+                    writer.writeInt(bytes.length);
+                    writer.writeBytes(bytes);
+                }
+            }
+            writer.pad();
+
+            writer.writeInts(slots, slots.length);
+            writer.writeInts(adjacency.getOffsets(), vertexCount + 1);
+            writer.writeInts(adjacency.getTargets(), adjacency.getEdgeCount());
+            writer.finish();
+        }
+    }
+
+    /**
+     * Reads a graph previously written by <code>save</code>
+     * @param file
+     * @return DirectedGraph<String>
+     * @throws IOException If the file is not a valid snapshot or fails its checksum
+     */
+    public static DirectedGraph<String> load(Path file) throws IOException {
+        return GraphSnapshot.load(file, null);
+    }
+
+    /**
+     * Overloaded version of <code>load</code> that also rejects the snapshot unless it records
+     * exactly the given size and modification time of its source
+     * @param file
+     * @param source Size and modification time expected, or <code>null</code> to accept any
+     * @return DirectedGraph<String>
+     * @throws IOException If the file is not a valid snapshot, fails its checksum or is stale
+     */
+    private static DirectedGraph<String> load(Path file, long[] source) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid snapshot size");
+            }
+
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (mapped.getInt() != MAGIC) {
+                throw new IOException("Not a graph snapshot");
+            }
+            if (mapped.getInt() != VERSION) {
+                throw new IOException("Unsupported snapshot version");
+            }
+
+            long payloadLength = mapped.getLong();
+            long checksum = mapped.getLong();
+            long sourceSize = mapped.getLong();
+            long sourceModified = mapped.getLong();
+
+            if (payloadLength != size - HEADER_SIZE) {
+                throw new IOException("Truncated snapshot");
+            }
+            if (source != null && (source[0] != sourceSize || source[1] != sourceModified)) {
+                throw new IOException("Stale snapshot");
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(mapped.duplicate().position(HEADER_SIZE));
+            if (crc.getValue() != checksum) {
+                throw new IOException("Snapshot checksum mismatch");
+            }
+
+            try {
+                return GraphSnapshot.readPayload(mapped);
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt snapshot", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the graph described by the given dependency file, read from the snapshot saved
+     * alongside it if that snapshot records the file's current size and modification time and
+     * passes validation, and otherwise parsed afresh, in which case a new snapshot is saved for
+     * the next caller. Failure to save is not an error, as the snapshot only serves to speed up
+     * later loads.
+     * @param fileName
+     * @return DirectedGraph<String>
+     * @throws IOException If the dependency file itself cannot be read
+     */
+    public static DirectedGraph<String> loadOrParse(String fileName) throws IOException {
+        return GraphSnapshot.loadOrParse(fileName, null);
+    }
+
+    /**
+     * Overloaded version of <code>loadOrParse</code> reporting the progress of any parse to the
+     * given monitor, which may also cancel it. A cancelled parse saves no snapshot.
+     * @param fileName
+     * @param monitor
+     * @return DirectedGraph<String>
+     * @throws IOException If the dependency file itself cannot be read
+     */
+    public static DirectedGraph<String> loadOrParse(String fileName, ProgressMonitor monitor)
+            throws IOException {
+        Path source = Paths.get(fileName);
+        Path snapshot = Paths.get(fileName + SUFFIX);
+
+        // Taken before parsing, so that a rewrite during the parse leaves the snapshot stale
+        BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+        long[] sourceState = new long[] {attributes.size(),
+            attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS)};
+
+        if (Files.exists(snapshot)) {
+            try {
+                return GraphSnapshot.load(snapshot, sourceState);
+            } catch (IOException e) {
+                // Stale or corrupt, fall through and parse the file again
+            }
+        }
+
+        // Large files are split among the available cores, small ones are parsed sequentially
+        DependencyFileParser parser = new DependencyFileParser();
+        parser.setProgressMonitor(monitor);
+        DirectedGraph<String> directedGraph = new DirectedGraph<>();
+        parser.parse(source, directedGraph, Runtime.getRuntime().availableProcessors());
+        try {
+            GraphSnapshot.save(directedGraph, snapshot, sourceState[0], sourceState[1]);
+        } catch (IOException e) {
+            // Nothing to be done, the next load will simply parse the file again
+        }
+        return directedGraph;
+    }
+
+    /**
+     * Number of bytes in the UTF-8 encoding of the string, as produced by <code>getBytes</code>,
+     * counted without encoding it. Unpaired surrogates are encoded as a single <code>?</code>.
+     * @param value
+     * @return int
+     */
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Decodes the payload, positioned just after the header. Counts are checked against the
+     * payload before anything is allocated from them, and the index and edge arrays are validated
+     * so that no lookup or traversal of the graph can fail or loop on a snapshot that passed its
+     * checksum but was written wrongly.
+     * @param buffer
+     * @return DirectedGraph<String>
+     * @throws IOException
+     */
+    private static DirectedGraph<String> readPayload(ByteBuffer buffer) throws IOException {
+        int vertexCount = buffer.getInt();
+        int edgeCount = buffer.getInt();
+        int slotCount = buffer.getInt();
+
+        // Every vertex takes at least its length, so the remainder bounds the vertex count
+        if (vertexCount < 0 || edgeCount < 0 || vertexCount > buffer.remaining() / 4
+                || slotCount != DirectedGraph.slotCount(vertexCount)) {
+            throw new IOException("Corrupt snapshot");
+        }
+
+        ArrayList<String> vertices = new ArrayList<>(vertexCount);
+        byte[] scratch = new byte[64];
+
+        for (int i = 0; i < vertexCount; i++) {
+            int length = buffer.getInt();
+            if (length < 0) {
+                vertices.add(null);
+                continue;
+            }
+            if (length > buffer.remaining()) {
+                throw new IOException("Corrupt snapshot");
+            }
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(scratch, 0, length);
+            vertices.add(new String(scratch, 0, length, StandardCharsets.UTF_8));
+        }
+        buffer.position((buffer.position() + 3) & ~3);
+
+        IntBuffer ints = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        if ((long) slotCount + vertexCount + 1 + edgeCount != ints.remaining()) {
+            throw new IOException("Corrupt snapshot");
+        }
+
+        int[] slots = new int[slotCount];
+        int[] offsets = new int[vertexCount + 1];
+        int[] targets = new int[edgeCount];
+        ints.get(slots);
+        ints.get(offsets);
+        ints.get(targets);
+
+        // Slots hold a key plus one, or zero when empty, and at least one must be empty for a
+        // lookup of a missing class to terminate
+        int occupied = 0;
+        for (int slot : slots) {
+            if (slot < 0 || slot > vertexCount) {
+                throw new IOException("Corrupt snapshot");
+            }
+            occupied += (slot != 0) ? 1 : 0;
+        }
+        if (occupied >= slotCount || offsets[0] != 0 || offsets[vertexCount] != edgeCount) {
+            throw new IOException("Corrupt snapshot");
+        }
+        for (int i = 0; i < vertexCount; i++) {
+            if (offsets[i] > offsets[i + 1]) {
+                throw new IOException("Corrupt snapshot");
+            }
+        }
+        for (int target : targets) {
+            if (target < 0 || target >= vertexCount) {
+                throw new IOException("Corrupt snapshot");
+            }
+        }
+
+        return new DirectedGraph<>(vertices, slots, new CompactAdjacency(offsets, targets));
+    }
+
+    /**
+     * Buffered little-endian writer that checksums the payload as it goes and fills in the header
+     * once the payload is complete
+     */
+    private static final class SnapshotWriter {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final CRC32 crc;
+        private long payloadLength;
+
+        // Size and modification time of the source file, recorded in the header
+        private final long sourceSize;
+        private final long sourceModified;
+
+        /**
+         * Parameterized constructor, reserves room for the header
+         * @param channel
+         * @param sourceSize
+         * @param sourceModified
+         * @throws IOException
+         */
+        public SnapshotWriter(FileChannel channel, long sourceSize, long sourceModified)
+                throws IOException {
+            this.channel = channel;
+            this.sourceSize = sourceSize;
+            this.sourceModified = sourceModified;
+            this.buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            this.crc = new CRC32();
+            this.payloadLength = 0;
+            this.channel.position(HEADER_SIZE);
+        }
+
+        /**
+         * @param value
+         * @return void
+         * @throws IOException
+         */
+        public void writeInt(int value) throws IOException {
+            if (this.buffer.remaining() < 4) {
+                this.flush();
+            }
+            this.buffer.putInt(value);
+        }
+
+        /**
+         * @param bytes
+         * @return void
+         * @throws IOException
+         */
+        public void writeBytes(byte[] bytes) throws IOException {
+            for (int written = 0; written < bytes.length; ) {
+                if (!this.buffer.hasRemaining()) {
+                    this.flush();
+                }
+                int length = Math.min(bytes.length - written, this.buffer.remaining());
+                this.buffer.put(bytes, written, length);
+                written += length;
+            }
+        }
+
+        /**
+         * Writes the first <code>length</code> values of the array in bulk
+         * @param values
+         * @param length
+         * @return void
+         * @throws IOException
+         */
+        public void writeInts(int[] values, int length) throws IOException {
+            for (int written = 0; written < length; ) {
+                if (this.buffer.remaining() < 4) {
+                    this.flush();
+                }
+                int count = Math.min(length - written, this.buffer.remaining() / 4);
+                this.buffer.asIntBuffer().put(values, written, count);
+                this.buffer.position(this.buffer.position() + count * 4);
+                written += count;
+            }
+        }
+
+        /**
+         * Zero-pads the payload to a multiple of four bytes
+         * @return void
+         * @throws IOException
+         */
+        public void pad() throws IOException {
+            while ((this.payloadLength + this.buffer.position()) % 4 != 0) {
+                if (!this.buffer.hasRemaining()) {
+                    this.flush();
+                }
+                this.buffer.put((byte) 0);
+            }
+        }
+
+        /**
+         * Writes out and checksums the buffered bytes
+         * @return void
+         * @throws IOException
+         */
+        private void flush() throws IOException {
+            this.buffer.flip();
+            this.crc.update(this.buffer.array(), 0, this.buffer.limit());
+            this.payloadLength += this.buffer.limit();
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+            this.buffer.clear();
+        }
+
+        /**
+         * Flushes the remaining payload and writes the header at the start of the file
+         * @return void
+         * @throws IOException
+         */
+        public void finish() throws IOException {
+            this.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putLong(this.payloadLength);
+            header.putLong(this.crc.getValue());
+            header.putLong(this.sourceSize);
+            header.putLong(this.sourceModified);
+            header.flip();
+
+            while (header.hasRemaining()) {
+                this.channel.write(header, HEADER_SIZE - header.remaining());
+            }
+        }
+    }
+}
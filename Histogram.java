@@ -0,0 +1,153 @@
+/**
+ * Histogram.java - Lock-free histogram of non-negative long values
+ * Begun 12/04/17
+ * @author Andrew Eissen
+ */
+
+package commandlinecompiler;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size histogram used by <code>GraphMetrics</code> to record durations and vertex counts.
+ * Values below eight have a bucket each, and every larger power-of-two range is split into eight
+ * equal buckets, so any recorded value lies within an eighth of its bucket's lower bound and
+ * percentiles are accurate to about 12%. The whole range of <code>long</code> fits in 488
+ * buckets.
+ * <br />
+ * <br />
+ * Recording is a handful of atomic increments without any locking, so any number of threads may
+ * record at once. Readings taken while values are being recorded may be slightly inconsistent
+ * with one another, which is acceptable for monitoring.
+ */
+final class Histogram {
+
+    // Bits of each value below its leading one bit that select a sub-bucket
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets;
+    private final LongAdder count;
+    private final LongAdder sum;
+    private final AtomicLong max;
+
+    /**
+     * Default constructor
+     */
+    public Histogram() {
+        this.buckets = new AtomicLongArray(BUCKET_COUNT);
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Records a value, negative values counting as zero
+     * @param value
+     * @return void
+     */
+    public void record(long value) {
+        long v = Math.max(value, 0);
+        this.buckets.incrementAndGet(Histogram.bucketOf(v));
+        this.count.increment();
+        this.sum.add(v);
+        if (v > this.max.get()) {
+            this.max.accumulateAndGet(v, Math::max);
+        }
+    }
+
+    /**
+     * @param value
+     * @return int
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Largest value falling into the given bucket
+     * @param bucket
+     * @return long
+     */
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Returns an upper bound on the value below which the given fraction of recorded values fall,
+     * never exceeding the largest value recorded
+     * @param fraction Between 0 and 1, for example 0.99 for the 99th percentile
+     * @return long
+     */
+    public long getPercentile(double fraction) {
+        long total = this.count.sum();
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max((long) Math.ceil(fraction * total), 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += this.buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(Histogram.upperBoundOf(i), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    /**
+     * @return long
+     */
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    /**
+     * @return long
+     */
+    public long getSum() {
+        return this.sum.sum();
+    }
+
+    /**
+     * @return long
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * @return double
+     */
+    public double getMean() {
+        long total = this.count.sum();
+        return (total == 0) ? 0.0 : (double) this.sum.sum() / total;
+    }
+
+    /**
+     * Discards every recorded value
+     * @return void
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            this.buckets.set(i, 0);
+        }
+        this.count.reset();
+        this.sum.reset();
+        this.max.set(0);
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * IntStack.java - Growable stack of primitive integers
+ * Begun 12/04/17
+ * @author Andrew Eissen
+ */
+
+package commandlinecompiler;
+
+import java.util.Arrays;
+
+/**
+ * Minimal LIFO stack of <code>int</code>s used by the traversal engines of
+ * <code>DirectedGraph</code>. Unlike <code>java.util.Stack</code>, it is unsynchronized and
+ * stores its elements in a plain array, so neither boxing nor per-element nodes are involved.
+ */
+final class IntStack {
+
+    // Backing array and number of elements currently present
+    private int[] elements;
+    private int size;
+
+    /**
+     * Default constructor
+     */
+    public IntStack() {
+        this(16);
+    }
+
+    /**
+     * Parameterized constructor
+     * @param capacity
+     */
+    public IntStack(int capacity) {
+        this.elements = new int[Math.max(capacity, 1)];
+        this.size = 0;
+    }
+
+    /**
+     * Pushes a value onto the top of the stack, doubling the backing array when full.
+     * @param value
+     * @return void
+     */
+    public void push(int value) {
+        if (this.size == this.elements.length) {
+            this.elements = Arrays.copyOf(this.elements, this.elements.length * 2);
+        }
+        this.elements[this.size++] = value;
+    }
+
+    /**
+     * Removes and returns the value on top of the stack. Callers are expected to check
+     * <code>isEmpty</code> beforehand.
+     * @return int
+     */
+    public int pop() {
+        return this.elements[--this.size];
+    }
+
+    /**
+     * Returns the value on top of the stack without removing it
+     * @return int
+     */
+    public int peek() {
+        return this.elements[this.size - 1];
+    }
+
+    /**
+     * Setter for the element at the given position, counting from the bottom of the stack
+     * @param index
+     * @param value
+     * @return void
+     */
+    public void set(int index, int value) {
+        this.elements[index] = value;
+    }
+
+    /**
+     * Getter for the element at the given position, counting from the bottom of the stack
+     * @param index
+     * @return int
+     */
+    public int get(int index) {
+        return this.elements[index];
+    }
+
+    /**
+     * Getter for <code>size</code>
+     * @return this.size
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return boolean
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Discards all elements while retaining the backing array for reuse
+     * @return void
+     */
+    public void clear() {
+        this.size = 0;
+    }
+}
@@ -0,0 +1,414 @@
+/**
+ * P4CLI.java - Headless command line front end answering recompilation queries in bulk
+ * Begun 12/04/17
+ * @author Andrew Eissen
+ */
+
+package commandlinecompiler;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Batch counterpart to <code>P4GUI</code> for use in scripts and continuous integration, where
+ * clicking a button once per query is not an option. The dependency file is loaded once, through
+ * its snapshot if a fresh one exists, after which queries are read line by line from a file or from
+ * standard input and answered on standard output.
+ * <br />
+ * <br />
+ * Each query line holds one or more whitespace-separated class names. A single class is answered
+ * with its recompilation order, several classes with the combined order of the whole change set.
+ * Every answer is one line consisting of the query, a tab, and either the classes in order
+ * separated by spaces or <code>error:</code> followed by a description of the problem, so that the
+ * output lines up with the input even when some queries fail. Blank lines and lines beginning with
+ * <code>#</code> are skipped.
+ * <br />
+ * <br />
+ * With <code>-p workers</code>, each query is instead answered with a
+ * <code>RecompilationPlanner</code> schedule for that many workers: the predicted wall-clock
+ * time, the critical path length and the total work, each followed by a tab, then the classes of
+ * each worker in the order it compiles them, workers separated by <code>|</code>. Compile costs
+ * are read from the dependency file's <code>.weights</code> sidecar if there is one, every class
+ * costing one unit otherwise.
+ * <br />
+ * <br />
+ * Usage: <code>java commandlinecompiler.P4CLI [-t threads] [-p workers] dependencyFile
+ * [queryFile]</code>. A missing query file, or <code>-</code>, reads standard input. With more
+ * than one thread, queries are read in batches whose slices are answered concurrently and written
+ * back in input order. The exit status is 0 if every query was answered, 2 if any failed and 1 if
+ * the graph could not be loaded at all. When started with
+ * <code>-Dcommandlinecompiler.metrics=true</code>, the collected <code>GraphMetrics</code> are
+ * printed to standard error at the end of the run.
+ */
+final class P4CLI {
+
+    // Lines of input answered per slice handed to a worker thread
+    private static final int SLICE_SIZE = 256;
+
+    // Size of the buffers wrapped around standard input and output
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Number of classes of each cycle listed in an error line
+    private static final int MAX_CYCLE_LENGTH = 10;
+
+    // Graph queried, and the number of threads answering queries
+    private final DirectedGraph<String> directedGraph;
+    private final int threads;
+
+    // Planner answering queries with schedules, or null to answer with orders
+    private RecompilationPlanner<String> planner;
+
+    // Number of queries answered and failed so far
+    private long queryCount;
+    private long errorCount;
+
+    /**
+     * Parameterized constructor
+     * @param directedGraph
+     * @param threads
+     */
+    public P4CLI(DirectedGraph<String> directedGraph, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.directedGraph = directedGraph;
+        this.threads = threads;
+        this.queryCount = 0;
+        this.errorCount = 0;
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        int threads = 1;
+        int workers = 0;
+        boolean planning = false;
+        int argument = 0;
+
+        try {
+            while (args.length - argument > 1
+                    && (args[argument].equals("-t") || args[argument].equals("-p"))) {
+                if (args[argument].equals("-t")) {
+                    threads = Integer.parseInt(args[argument + 1]);
+                } else {
+                    workers = Integer.parseInt(args[argument + 1]);
+                    planning = true;
+                }
+                argument += 2;
+            }
+        } catch (NumberFormatException e) {
+            argument = args.length;
+        }
+
+        if (args.length - argument < 1 || args.length - argument > 2 || threads < 1
+                || (planning && workers < 1)) {
+            System.err.println("Usage: java commandlinecompiler.P4CLI [-t threads] "
+                + "[-p workers] dependencyFile [queryFile]");
+            System.exit(1);
+        }
+
+        String fileName = args[argument];
+        String queryFile = (args.length - argument == 2) ? args[argument + 1] : "-";
+        DirectedGraph<String> directedGraph;
+        GraphMetrics metrics = GraphMetrics.installIfEnabled();
+
+        long start = System.nanoTime();
+        try {
+            directedGraph = GraphSnapshot.loadOrParse(fileName);
+        } catch (IOException e) {
+            System.err.println("Error: Unable to read " + fileName);
+            System.exit(1);
+            return;
+        }
+
+        P4CLI cli = new P4CLI(directedGraph, threads);
+        if (planning) {
+            Path weightsFile = Paths.get(fileName + RecompilationPlanner.WEIGHTS_SUFFIX);
+            try {
+                if (Files.exists(weightsFile)) {
+                    RecompilationPlanner.loadWeights(directedGraph, weightsFile);
+                }
+            } catch (IOException e) {
+                System.err.println("Error: " + e.getMessage());
+                System.exit(1);
+            }
+            cli.setPlanner(new RecompilationPlanner<>(directedGraph, workers));
+        }
+        long loaded = System.nanoTime();
+
+        try (BufferedReader reader = queryFile.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8),
+                    BUFFER_SIZE)
+                : Files.newBufferedReader(Paths.get(queryFile), StandardCharsets.UTF_8);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+
+            cli.run(reader, writer);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            System.exit(1);
+        }
+
+        long finished = System.nanoTime();
+        System.err.printf("Loaded %d classes in %.1f ms, answered %d queries (%d failed) in %.1f "
+            + "ms%n", directedGraph.getVertexCount(), (loaded - start) / 1e6, cli.queryCount,
+            cli.errorCount, (finished - loaded) / 1e6);
+        if (metrics != null) {
+            System.err.println("Metrics: " + metrics);
+        }
+        System.exit((cli.errorCount == 0) ? 0 : 2);
+    }
+
+    /**
+     * Setter for <code>planner</code>, <code>null</code> to answer queries with orders again
+     * @param planner
+     * @return void
+     */
+    public void setPlanner(RecompilationPlanner<String> planner) {
+        this.planner = planner;
+    }
+
+    /**
+     * Answers every query read from <code>reader</code>, writing the answers to
+     * <code>writer</code> in the same order. The writer is flushed but not closed.
+     * <br />
+     * <br />
+     * With several threads the graph is first compacted and its query cache disabled. Neither
+     * sorts nor cycle reports then modify the graph, so any number of them may run at once, each
+     * writing its order straight into the answers through the allocation-free sink version of
+     * <code>inTopologicalOrder</code>. With a single thread the cache is left alone, and repeated
+     * queries are answered from it.
+     * @param reader
+     * @param writer
+     * @return void
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public void run(BufferedReader reader, Writer writer)
+            throws IOException, InterruptedException {
+
+        if (this.threads == 1) {
+            Slice slice = new Slice();
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                this.answer(line, slice);
+                if (slice.answers.length() >= BUFFER_SIZE) {
+                    this.write(slice, writer);
+                }
+            }
+            this.write(slice, writer);
+            writer.flush();
+            return;
+        }
+
+        this.directedGraph.compact();
+        this.directedGraph.setQueryCacheLimits(0, 0);
+
+        ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+        try {
+            ArrayList<String> batch = new ArrayList<>(SLICE_SIZE * this.threads);
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                batch.add(line);
+                if (batch.size() == SLICE_SIZE * this.threads) {
+                    this.answerBatch(batch, pool, writer);
+                    batch.clear();
+                }
+            }
+            this.answerBatch(batch, pool, writer);
+            writer.flush();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Splits the batch into slices answered concurrently, then writes the answers of each slice in
+     * turn so that the output follows the input order
+     * @param batch
+     * @param pool
+     * @param writer
+     * @return void
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private void answerBatch(List<String> batch, ExecutorService pool, Writer writer)
+            throws IOException, InterruptedException {
+
+        ArrayList<Callable<Slice>> slices = new ArrayList<>();
+
+        for (int from = 0; from < batch.size(); from += SLICE_SIZE) {
+            List<String> lines = batch.subList(from, Math.min(from + SLICE_SIZE, batch.size()));
+            slices.add(() -> {
+                Slice slice = new Slice();
+                for (String line : lines) {
+                    this.answer(line, slice);
+                }
+                return slice;
+            });
+        }
+
+        for (Future<Slice> future : pool.invokeAll(slices)) {
+            try {
+                this.write(future.get(), writer);
+            } catch (ExecutionException e) {
+                throw new IOException("Query evaluation failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Writes out the answers accumulated in the slice and adds its counts to the totals, leaving
+     * the slice empty
+     * @param slice
+     * @param writer
+     * @return void
+     * @throws IOException
+     */
+    private void write(Slice slice, Writer writer) throws IOException {
+        writer.append(slice.answers);
+        this.queryCount += slice.queries;
+        this.errorCount += slice.errors;
+
+        slice.answers.setLength(0);
+        slice.queries = 0;
+        slice.errors = 0;
+    }
+
+    /**
+     * Answers accumulated by one thread, along with the number of queries answered and failed.
+     * Each worker fills its own slice, so nothing is shared until the slices are written out in
+     * order.
+     */
+    private static final class Slice {
+
+        private final StringBuilder answers = new StringBuilder();
+        private int queries;
+        private int errors;
+    }
+
+    /**
+     * Answers a single query line, appending the answer line to the slice. Nothing is appended
+     * for blank lines and comments.
+     * @param line
+     * @param slice
+     * @return void
+     */
+    private void answer(String line, Slice slice) {
+        String query = line.trim();
+        if (query.isEmpty() || query.charAt(0) == '#') {
+            return;
+        }
+
+        StringBuilder answers = slice.answers;
+        answers.append(query).append('\t');
+        slice.queries++;
+
+        try {
+            String[] classes = query.split("\\s+");
+
+            if (this.planner != null) {
+                RecompilationPlanner.Plan<String> plan = (classes.length == 1)
+                    ? this.planner.plan(classes[0])
+                    : this.planner.plan(Arrays.asList(classes));
+                P4CLI.describePlan(plan, answers);
+
+            // With several threads the cache is off, so the order is written straight out
+            } else if (this.threads > 1) {
+                int mark = answers.length();
+                Consumer<String> sink = vertex -> {
+                    if (answers.length() != mark) {
+                        answers.append(' ');
+                    }
+                    answers.append(vertex);
+                };
+
+                if (classes.length == 1) {
+                    this.directedGraph.inTopologicalOrder(classes[0], sink);
+                } else {
+                    this.directedGraph.inTopologicalOrder(Arrays.asList(classes), sink);
+                }
+            } else {
+                List<String> order = (classes.length == 1)
+                    ? this.directedGraph.inTopologicalOrder(classes[0])
+                    : this.directedGraph.inTopologicalOrder(Arrays.asList(classes));
+
+                for (int i = 0; i < order.size(); i++) {
+                    if (i != 0) {
+                        answers.append(' ');
+                    }
+                    answers.append(order.get(i));
+                }
+            }
+        } catch (InvalidClassNameException e) {
+            answers.append("error: ").append(e.getMessage());
+            slice.errors++;
+        } catch (CycleOccurrenceException e) {
+            answers.append("error: ").append(e.getMessage());
+            P4CLI.describeCycles(e, answers);
+            slice.errors++;
+        }
+        answers.append('\n');
+    }
+
+    /**
+     * Appends the predicted time, critical path length and total work of the plan, then the
+     * classes of each worker, workers separated by <code>|</code>
+     * @param plan
+     * @param answers
+     * @return void
+     */
+    private static void describePlan(RecompilationPlanner.Plan<String> plan,
+            StringBuilder answers) {
+        answers.append(plan.getMakespan()).append('\t').append(plan.getCriticalPathLength())
+            .append('\t').append(plan.getTotalWork()).append('\t');
+
+        for (int worker = 0; worker < plan.getWorkers(); worker++) {
+            if (worker != 0) {
+                answers.append(" | ");
+            }
+            answers.append(String.join(" ", plan.getAssignments(worker)));
+        }
+    }
+
+    /**
+     * Appends the classes of each cycle carried by the exception, cycles separated by
+     * <code>|</code>, cutting overly long cycles short
+     * @param e
+     * @param answers
+     * @return void
+     */
+    private static void describeCycles(CycleOccurrenceException e, StringBuilder answers) {
+        String separator = ": ";
+
+        for (List<?> cycle : e.getCycles()) {
+            answers.append(separator);
+            separator = " | ";
+
+            for (int i = 0; i < cycle.size() && i < MAX_CYCLE_LENGTH; i++) {
+                if (i != 0) {
+                    answers.append(' ');
+                }
+                answers.append(cycle.get(i));
+            }
+            if (cycle.size() > MAX_CYCLE_LENGTH) {
+                answers.append(" ... (").append(cycle.size()).append(" classes)");
+            }
+        }
+    }
+}
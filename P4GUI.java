@@ -8,6 +8,7 @@ package commandlinecompiler;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
@@ -26,14 +27,34 @@ final class P4GUI extends JFrame {
 
     // GUI-related variables
     private JFrame mainFrame;
-    private JPanel mainPanel, userInputPanel, recompOrderPanel, firstLine, secondLine;
-    private JLabel inputFileLabel, recompileLabel;
-    private JTextField inputFileField, recompileField;
-    private JButton buildGraphButton, topologicalButton;
-    private JTextArea recompOrderTextArea;
+    private JPanel contentPanel, mainPanel, userInputPanel, recompOrderPanel, firstLine,
+        secondLine, filterLine, progressPanel;
+    private JLabel inputFileLabel, recompileLabel, filterLabel, progressLabel;
+    private JTextField inputFileField, recompileField, filterField;
+    private JButton buildGraphButton, topologicalButton, exportButton, cancelButton;
+    private JList<String> recompOrderList;
+    private ResultListModel recompOrderModel;
+    private JProgressBar progressBar;
+    private JCheckBox watchCheckBox;
+
+    // Typical class name, from which the list derives its fixed cell size
+    private static final String PROTOTYPE_CELL = "com.example.SomeTypicalClassName";
+
+    // Rows written between progress reports while exporting
+    private static final int EXPORT_INTERVAL = 1 << 14;
 
     // DirectedGraph
-    private DirectedGraph directedGraph;
+    private DirectedGraph<String> directedGraph;
+
+    // Background build or sort currently running, if any
+    private GraphTask<?> currentTask;
+
+    // File the graph was built from, and the watcher applying its changes while watching is on
+    private String graphFileName;
+    private DependencyFileWatcher fileWatcher;
+
+    // Incremented whenever the watcher is replaced, so that reports from an old one are dropped
+    private int watchGeneration;
 
     /**
      * Default constructor
@@ -42,7 +63,7 @@ final class P4GUI extends JFrame {
         super("Class Dependency Graph");
         this.setWindowTitle("Class Dependency Graph");
         this.setWindowWidth(600);
-        this.setWindowHeight(300);
+        this.setWindowHeight(480);
     }
 
     /**
@@ -132,7 +153,7 @@ final class P4GUI extends JFrame {
 
         // Mini-panels
         this.userInputPanel = new JPanel(new GridLayout(2, 1));
-        this.recompOrderPanel = new JPanel(new FlowLayout());
+        this.recompOrderPanel = new JPanel(new BorderLayout(0, 5));
         this.firstLine = new JPanel(new GridLayout(1, 3, 20, 0));
         this.secondLine = new JPanel(new GridLayout(1, 3, 20, 0));
 
@@ -152,9 +173,38 @@ final class P4GUI extends JFrame {
         this.recompileField = new JTextField();
         this.topologicalButton = new JButton("Topological Order");
 
-        // Text Area, kinda janked
-        this.recompOrderTextArea = new JTextArea(5, 50);
-        this.recompOrderTextArea.setEditable(false);
+        /**
+         * The recompilation order used to be joined into a single <code>String</code> and laid
+         * out in a <code>JTextArea</code>, which took seconds for large orders. A list with a
+         * prototype cell value has fixed cell sizes, so it only ever measures and paints the rows
+         * scrolled into view, while the model wraps the result without copying it.
+         */
+        this.recompOrderModel = new ResultListModel();
+        this.recompOrderList = new JList<>(this.recompOrderModel);
+        this.recompOrderList.setPrototypeCellValue(PROTOTYPE_CELL);
+        this.recompOrderList.setVisibleRowCount(5);
+
+        // Filter line, narrows the list as the user types
+        this.filterLine = new JPanel(new BorderLayout(10, 0));
+        this.filterLabel = new JLabel("Filter:");
+        this.filterField = new JTextField();
+        this.exportButton = new JButton("Export...");
+        this.filterField.getDocument().addDocumentListener(new FilterListener());
+
+        // Progress of background builds and sorts
+        this.progressPanel = new JPanel(new BorderLayout(10, 5));
+        this.progressPanel.setBorder(BorderFactory.createEmptyBorder(0, 10, 10, 10));
+        this.progressBar = new JProgressBar(0, 100);
+        this.progressBar.setStringPainted(true);
+        this.progressLabel = new JLabel("Ready");
+        this.cancelButton = new JButton("Cancel");
+        this.cancelButton.setEnabled(false);
+        this.watchCheckBox = new JCheckBox("Watch input file for changes");
+
+        this.progressPanel.add(this.watchCheckBox, BorderLayout.NORTH);
+        this.progressPanel.add(this.progressBar, BorderLayout.CENTER);
+        this.progressPanel.add(this.cancelButton, BorderLayout.EAST);
+        this.progressPanel.add(this.progressLabel, BorderLayout.SOUTH);
 
         // Add elements/other mini-panels to mini-panels
         this.firstLine.add(this.inputFileLabel);
@@ -167,33 +217,312 @@ final class P4GUI extends JFrame {
 
         this.userInputPanel.add(this.firstLine);
         this.userInputPanel.add(this.secondLine);
-        this.recompOrderPanel.add(this.recompOrderTextArea);
+        this.filterLine.add(this.filterLabel, BorderLayout.WEST);
+        this.filterLine.add(this.filterField, BorderLayout.CENTER);
+        this.filterLine.add(this.exportButton, BorderLayout.EAST);
+        this.recompOrderPanel.add(this.filterLine, BorderLayout.NORTH);
+        this.recompOrderPanel.add(new JScrollPane(this.recompOrderList), BorderLayout.CENTER);
 
         // Add mini-panels to mainFrame
         this.mainPanel.add(this.userInputPanel);
         this.mainPanel.add(this.recompOrderPanel);
 
+        this.contentPanel = new JPanel(new BorderLayout());
+        this.contentPanel.add(this.mainPanel, BorderLayout.CENTER);
+        this.contentPanel.add(this.progressPanel, BorderLayout.SOUTH);
+
         // Mouse handlers
         this.buildGraphButton.addMouseListener(new GUIMouseAdapter("build"));
         this.topologicalButton.addMouseListener(new GUIMouseAdapter("topological"));
+        this.cancelButton.addMouseListener(new GUIMouseAdapter("cancel"));
+        this.exportButton.addMouseListener(new GUIMouseAdapter("export"));
+
+        // Selection changes on release, after mouse listeners have fired, hence the action listener
+        this.watchCheckBox.addActionListener(e -> this.updateFileWatcher());
 
         // Assemble Frame
         this.mainFrame = new JFrame(this.getWindowTitle());
         this.mainFrame.setSize(this.getWindowWidth(), this.getWindowHeight());
-        this.mainFrame.setContentPane(this.mainPanel);
+        this.mainFrame.setContentPane(this.contentPanel);
         this.mainFrame.setResizable(false);
         this.mainFrame.setVisible(true);
         this.mainFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
     }
 
+    /**
+     * Enables the build and sort buttons while idle, and the cancel button while a background task
+     * is running
+     * @param busy
+     * @return void
+     */
+    private void setBusy(boolean busy) {
+        this.buildGraphButton.setEnabled(!busy);
+        this.topologicalButton.setEnabled(!busy);
+        this.exportButton.setEnabled(!busy);
+        this.cancelButton.setEnabled(busy);
+    }
+
+    /**
+     * Stops the current file watcher, if any, and starts a new one over the current graph if
+     * watching is selected and a graph has been built. The watcher applies each change to the file
+     * to the graph as a diff of its edges, off the event dispatch thread and while holding the
+     * graph's monitor, then reports back here. Should it have to rebuild the graph instead, the
+     * new graph replaces the old one.
+     * @return void
+     */
+    private void updateFileWatcher() {
+        int generation = ++this.watchGeneration;
+
+        if (this.fileWatcher != null) {
+            try {
+                this.fileWatcher.close();
+            } catch (IOException e) {
+                // Nothing more can be done with a watcher that failed to close
+            }
+            this.fileWatcher = null;
+        }
+
+        if (!this.watchCheckBox.isSelected() || this.directedGraph == null) {
+            return;
+        }
+
+        DependencyFileWatcher watcher = new DependencyFileWatcher(
+                java.nio.file.Paths.get(this.graphFileName), this.directedGraph,
+                new DependencyFileWatcher.Listener() {
+
+            @Override
+            public void reloaded(DirectedGraph<String> graph, int addedEdges, int removedEdges,
+                    long nanos) {
+                SwingUtilities.invokeLater(() -> {
+                    if (generation != watchGeneration) {
+                        return;
+                    } else if (graph != directedGraph) {
+                        progressLabel.setText(String.format("Rebuilt graph of %,d classes from %s "
+                            + "in %.1f ms", graph.getVertexCount(), graphFileName, nanos / 1e6));
+                    } else {
+                        progressLabel.setText(String.format("Reloaded %s: %,d edges added, %,d "
+                            + "removed in %.1f ms", graphFileName, addedEdges, removedEdges,
+                            nanos / 1e6));
+                    }
+                    directedGraph = graph;
+                });
+            }
+
+            @Override
+            public void reloadFailed(Exception cause) {
+                SwingUtilities.invokeLater(() -> {
+                    if (generation == watchGeneration) {
+                        progressLabel.setText("Unable to reload " + graphFileName + ": " + cause);
+                    }
+                });
+            }
+        });
+
+        try {
+            watcher.start();
+            this.fileWatcher = watcher;
+        } catch (IOException e) {
+            this.watchCheckBox.setSelected(false);
+            JOptionPane.showMessageDialog(null, "Error: Unable to watch " + this.graphFileName
+                + ".", "Error", JOptionPane.INFORMATION_MESSAGE);
+        }
+    }
+
+    /**
+     * Shows the given order in the result list, noting its size in the panel title
+     * @param results
+     * @return void
+     */
+    private void showResults(java.util.List<String> results) {
+        this.recompOrderModel.setResults(results);
+        this.updateResultTitle();
+    }
+
+    /**
+     * Sets the title of the result panel to the number of classes shown and, while a filter is
+     * applied, the number in the full order
+     * @return void
+     */
+    private void updateResultTitle() {
+        String title = "Recompilation Order";
+        int shown = this.recompOrderModel.getSize();
+        int total = this.recompOrderModel.getTotalSize();
+
+        if (total > 0) {
+            title += (shown == total) ? String.format(" (%,d classes)", total)
+                : String.format(" (%,d of %,d classes)", shown, total);
+        }
+        this.recompOrderPanel.setBorder(BorderFactory.createTitledBorder(title));
+    }
+
+    /**
+     * Applies the contents of <code>filterField</code> to the result list on every keystroke
+     * @see javax.swing.event.DocumentListener
+     */
+    final class FilterListener implements javax.swing.event.DocumentListener {
+
+        /**
+         * @return void
+         */
+        private void update() {
+            recompOrderModel.setFilter(filterField.getText());
+            updateResultTitle();
+        }
+
+        @Override
+        public void insertUpdate(javax.swing.event.DocumentEvent e) {
+            this.update();
+        }
+
+        @Override
+        public void removeUpdate(javax.swing.event.DocumentEvent e) {
+            this.update();
+        }
+
+        @Override
+        public void changedUpdate(javax.swing.event.DocumentEvent e) {
+            this.update();
+        }
+    }
+
     /**
      * @param args the command line arguments
      */
     public static void main(String[] args) {
+
+        // Metrics may be watched in JConsole when enabled by system property
+        GraphMetrics.installIfEnabled();
+
         P4GUI newGUI = new P4GUI();
         newGUI.constructGUI();
     }
 
+    /**
+     * Base class of the background tasks started by the buttons. Parsing a large input file or
+     * sorting a large graph on the event dispatch thread would freeze the window for the whole
+     * operation, so both are run by a <code>SwingWorker</code> instead. The task doubles as the
+     * <code>ProgressMonitor</code> of the operation: progress reports are published from the
+     * worker thread and shown on the event dispatch thread, and the parser and graph poll
+     * <code>isCancelled</code>, so the cancel button stops the work itself rather than merely
+     * discarding its result.
+     * <br />
+     * <br />
+     * The buttons stay disabled until <code>doInBackground</code> has actually returned, even
+     * after a cancellation, so that no second task can touch the graph while the first is still
+     * winding down.
+     * @see javax.swing.SwingWorker
+     */
+    abstract class GraphTask<V> extends SwingWorker<V, long[]> implements ProgressMonitor {
+
+        // Name of the operation, used in status readouts
+        private final String operation;
+
+        // Time at which the task was started
+        private long startTime;
+
+        /**
+         * Parameterized constructor
+         * @param operation
+         */
+        public GraphTask(String operation) {
+            this.operation = operation;
+        }
+
+        /**
+         * Performs the operation on the worker thread
+         * @return V
+         * @throws Exception
+         */
+        protected abstract V compute() throws Exception;
+
+        /**
+         * Shows the result on the event dispatch thread
+         * @param result
+         * @param seconds
+         * @return void
+         */
+        protected abstract void succeeded(V result, double seconds);
+
+        /**
+         * Reports an exception thrown by <code>compute</code> on the event dispatch thread
+         * @param cause
+         * @return void
+         */
+        protected abstract void failed(Throwable cause);
+
+        /**
+         * Turns the latest published progress into a status readout
+         * @param progress
+         * @param seconds
+         * @return void
+         */
+        protected abstract void showProgress(long[] progress, double seconds);
+
+        /**
+         * Starts the task, disabling the buttons until it finishes
+         * @return void
+         */
+        public void start() {
+            currentTask = this;
+            setBusy(true);
+            progressBar.setIndeterminate(true);
+            progressLabel.setText(this.operation + "...");
+            this.startTime = System.nanoTime();
+            this.execute();
+        }
+
+        /**
+         * @return double Seconds elapsed since the task was started
+         */
+        protected double getElapsedSeconds() {
+            return Math.max(System.nanoTime() - this.startTime, 1) / 1e9;
+        }
+
+        @Override
+        protected final V doInBackground() throws Exception {
+            try {
+                return this.compute();
+            } finally {
+                SwingUtilities.invokeLater(() -> {
+                    if (currentTask == this) {
+                        currentTask = null;
+                        setBusy(false);
+                    }
+                });
+            }
+        }
+
+        @Override
+        protected final void process(java.util.List<long[]> chunks) {
+            if (!this.isCancelled()) {
+                this.showProgress(chunks.get(chunks.size() - 1), this.getElapsedSeconds());
+            }
+        }
+
+        @Override
+        protected final void done() {
+            progressBar.setIndeterminate(false);
+
+            if (this.isCancelled()) {
+                progressBar.setValue(0);
+                progressLabel.setText(this.operation + " cancelled");
+                return;
+            }
+
+            try {
+                V result = this.get();
+                progressBar.setValue(100);
+                this.succeeded(result, this.getElapsedSeconds());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                progressBar.setValue(0);
+                progressLabel.setText(this.operation + " failed");
+                this.failed(e.getCause());
+            }
+        }
+    }
+
     /**
      * Class for handling button clicks, extends <code>MouseAdapter</code>
      * @see java.awt.event.MouseAdapter
@@ -228,8 +557,20 @@ final class P4GUI extends JFrame {
          */
         @Override
         public void mousePressed(MouseEvent e) {
+
+            // Mouse listeners still fire on disabled buttons
+            if (!e.getComponent().isEnabled()) {
+                return;
+            }
+
             if (this.action.equals("build")) {
                 this.buildDirectedGraph();
+            } else if (this.action.equals("cancel")) {
+                if (currentTask != null) {
+                    currentTask.cancel(false);
+                }
+            } else if (this.action.equals("export")) {
+                this.exportRecompilationOrder();
             } else {
                 this.compileInTopologicalOrder();
             }
@@ -238,11 +579,23 @@ final class P4GUI extends JFrame {
         /**
          * This method handles clicks of the "Build Directed Graph" button. The implementation
          * changed a few times during development, but the basic extraction of the user-input file
-         * from the field and subsequent scanning of its contents has remained constant. To aid in
-         * visualization, the contents are read and split into a series of <code>String</code>
-         * arrays and added to an <code>ArrayList</code>. The resultant is then passed to the
-         * <code>DirectedGraph</code> generic class to be constructed by the
-         * <code>buildDirectedGraph</code> method.
+         * from the field and subsequent scanning of its contents has remained constant. The file
+         * was originally read with a <code>Scanner</code>, each line split into a
+         * <code>String</code> array by regular expression and buffered in an
+         * <code>ArrayList</code> before being passed to <code>buildDirectedGraph</code>. It is now
+         * handed to <code>DependencyFileParser</code>, which memory-maps the file and feeds each
+         * line straight into the <code>DirectedGraph</code> as it is tokenized.
+         * <br />
+         * <br />
+         * After a successful parse, the graph is saved as a binary <code>GraphSnapshot</code>
+         * alongside the input file. Later builds of an unchanged file load that snapshot instead,
+         * falling back to parsing if it is stale, missing or rejected as corrupt.
+         * <br />
+         * <br />
+         * The file is read by a background <code>GraphTask</code>, which keeps the window
+         * responsive, shows the share of the file read along with the lines read per second, and
+         * may be cancelled part way through. The previous graph remains in place until the new one
+         * is complete.
          * <br />
          * <br />
          * The method catches certain improper input, such as a nonexistent file and an empty
@@ -254,49 +607,60 @@ final class P4GUI extends JFrame {
          * @return void
          */
         private void buildDirectedGraph() {
-            Scanner fileScanner = null;
-            String[] newStringArray;
-            ArrayList<String[]> stringArrays = new ArrayList<>();
             String fileName = inputFileField.getText();
 
-            try {
-                // Catches empty input
-                if (fileName.isEmpty()) {
-                    this.displayStatusPopup("Error: File name required.", "Error");
-                } else {
-                    fileScanner = new Scanner(new BufferedReader(new FileReader(fileName)));
-
-                    /**
-                     * Splits file input into a series of <code>String</code> arrays, each of which
-                     * represents a line of the input file and thus a dependency relationship
-                     * between classes. The reason for this was to preserve the generic nature of
-                     * the <code>DirectedGraph</code> class. Rather than have that class's methods
-                     * mess around with <code>String</code>s, it made more sense for this handler to
-                     * pass an <code>ArrayList</code> of arrays of the proper desired type.
-                     * <br />
-                     * <br />
-                     * To prove the point, the author originally included a test method that passed
-                     * the graph class an <code>ArrayList</code> of <code>Integer</code> arrays to
-                     * test the operations thereof, a fact that would not have been possible if the
-                     * class had to mess with input <code>String</code>s.
-                     */
-                    while (fileScanner.hasNextLine()) {
-                        newStringArray = fileScanner.nextLine().split("\\s+");
-                        stringArrays.add(newStringArray);
-                    }
+            // Catches empty input
+            if (fileName.isEmpty()) {
+                this.displayStatusPopup("Error: File name required.", "Error");
+                return;
+            }
 
-                    // Define the <code>DirectedGraph</code> and build the graph
-                    directedGraph = new DirectedGraph();
-                    directedGraph.buildDirectedGraph(stringArrays);
-                    this.displayStatusPopup("Success: Graph built successfully.", "Success");
+            new GraphTask<DirectedGraph<String>>("Building graph") {
+
+                /**
+                 * The parser still hands the graph arrays of the desired type, one per line of the
+                 * input file and thus per dependency relationship between classes, so the
+                 * <code>DirectedGraph</code> class remains generic and never has to mess around
+                 * with input <code>String</code>s itself.
+                 */
+                @Override
+                protected DirectedGraph<String> compute() throws IOException {
+                    return GraphSnapshot.loadOrParse(fileName, this);
                 }
-            } catch (IOException e) {
-                this.displayStatusPopup("Error: File not found.", "Error");
-            } finally { // Close the reader
-                if (fileScanner != null) {
-                    fileScanner.close();
+
+                @Override
+                public void parsed(long bytes, long totalBytes, long lines) {
+                    this.publish(new long[] {bytes, totalBytes, lines});
                 }
-            }
+
+                @Override
+                protected void showProgress(long[] progress, double seconds) {
+                    progressBar.setIndeterminate(false);
+                    progressBar.setValue((int) (progress[0] * 100 / Math.max(progress[1], 1)));
+                    progressLabel.setText(String.format("Read %,d of %,d KB, %,d lines "
+                        + "(%,.0f lines/s)", progress[0] >> 10, progress[1] >> 10, progress[2],
+                        progress[2] / seconds));
+                }
+
+                @Override
+                protected void succeeded(DirectedGraph<String> result, double seconds) {
+                    directedGraph = result;
+                    graphFileName = fileName;
+                    updateFileWatcher();
+                    progressLabel.setText(String.format("Built graph of %,d classes in %.2f s",
+                        result.getVertexCount(), seconds));
+                    displayStatusPopup("Success: Graph built successfully.", "Success");
+                }
+
+                @Override
+                protected void failed(Throwable cause) {
+                    if (cause instanceof IOException) {
+                        displayStatusPopup("Error: File not found.", "Error");
+                    } else {
+                        displayStatusPopup("Error: " + cause, "Error");
+                    }
+                }
+            }.start();
         }
 
         /**
@@ -314,38 +678,172 @@ final class P4GUI extends JFrame {
          * presses, undefined <code>DirectedGraph</code> objects, unentered class names, nonexistent
          * class names, and cycles present in the graph itself. It takes the returned graph
          * <code>ArrayList</code> of topologically ordered nodes and assembles them into a
-         * whitespace-delimited <code>String</code> to be displayed in the GUI's
-         * <code>recompOrderTextArea</code>.
+         * <code>ResultListModel</code> displayed by the GUI's <code>recompOrderList</code>.
+         * <br />
+         * <br />
+         * The sort itself is run by a background <code>GraphTask</code> that registers itself as
+         * the graph's progress monitor for the duration, showing the number of vertices visited
+         * and allowing the traversal to be cancelled.
          * @return void
          */
         private void compileInTopologicalOrder() {
-            ArrayList<String> vertices;
             String className = recompileField.getText();
+            DirectedGraph<String> graph = directedGraph;
+
+            /**
+             * Included in case the user attempts to click the "Topological Order" button before
+             * actually constructing the graph.
+             */
+            if (graph == null) {
+                this.displayStatusPopup("Error: Directed graph not found.", "Error");
+                return;
+
+            // Empty field input handling
+            } else if (className.isEmpty()) {
+                this.displayStatusPopup("Error: Select class to compile.", "Error");
+                return;
+            }
 
-            try {
-                /**
-                 * Included in case the user attempts to click the "Topological Order" button
-                 * before actually constructing the graph.
-                 */
-                if (directedGraph == null) {
-                    this.displayStatusPopup("Error: Directed graph not found.", "Error");
-
-                // Empty field input handling
-                } else if (className.isEmpty()) {
-                    this.displayStatusPopup("Error: Select class to compile.", "Error");
-                } else {
-                    vertices = directedGraph.inTopologicalOrder(className);
-                    recompOrderTextArea.setText(String.join(" ", vertices));
+            new GraphTask<ArrayList<String>>("Sorting") {
+
+                @Override
+                protected ArrayList<String> compute() throws Exception {
+
+                    // The file watcher changes the graph while holding its monitor
+                    synchronized (graph) {
+                        graph.setProgressMonitor(this);
+                        try {
+                            return graph.inTopologicalOrder(className);
+                        } finally {
+                            graph.setProgressMonitor(null);
+                        }
+                    }
                 }
 
-            // As stated above, the use of popups necessitated the exception handling be kept here
-            } catch(InvalidClassNameException e) {
-                this.displayStatusPopup("Error: No class by that name found.", "Error");
-                recompOrderTextArea.setText("");
-            } catch(CycleOccurrenceException e) {
-                this.displayStatusPopup("Error: Cycle found.", "Error");
-                recompOrderTextArea.setText("");
+                @Override
+                public void visited(long vertices, long totalVertices) {
+                    this.publish(new long[] {vertices, totalVertices});
+                }
+
+                @Override
+                protected void showProgress(long[] progress, double seconds) {
+                    progressLabel.setText(String.format("Visited %,d of at most %,d classes "
+                        + "(%,.0f classes/s)", progress[0], progress[1], progress[0] / seconds));
+                }
+
+                @Override
+                protected void succeeded(ArrayList<String> result, double seconds) {
+                    showResults(result);
+                    progressLabel.setText(String.format("Sorted %,d classes in %.3f s",
+                        result.size(), seconds));
+                }
+
+                // As stated above, the use of popups necessitated the exception handling be here
+                @Override
+                protected void failed(Throwable cause) {
+                    if (cause instanceof InvalidClassNameException) {
+                        displayStatusPopup("Error: No class by that name found.", "Error");
+                    } else if (cause instanceof CycleOccurrenceException) {
+                        displayStatusPopup("Error: Cycle found."
+                            + describeCycles((CycleOccurrenceException) cause), "Error");
+                    } else {
+                        displayStatusPopup("Error: " + cause, "Error");
+                    }
+                    showResults(Collections.emptyList());
+                }
+            }.start();
+        }
+
+        /**
+         * Handles clicks of the "Export..." button, writing the classes currently listed, one per
+         * line, to a file chosen by the user. The rows are streamed straight from the list model
+         * to a buffered writer by a background <code>GraphTask</code>, so no single
+         * <code>String</code> holding the whole order is ever assembled. A fixed copy of the rows
+         * is taken first, so the filter may go on being edited during the export.
+         * @return void
+         */
+        private void exportRecompilationOrder() {
+            java.util.List<String> rows = recompOrderModel.snapshot();
+
+            if (rows.isEmpty()) {
+                this.displayStatusPopup("Error: No recompilation order to export.", "Error");
+                return;
+            }
+
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showSaveDialog(mainFrame) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            File file = chooser.getSelectedFile();
+
+            new GraphTask<Integer>("Exporting") {
+
+                @Override
+                protected Integer compute() throws IOException {
+                    try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                            new FileOutputStream(file), java.nio.charset.StandardCharsets.UTF_8))) {
+                        for (int i = 0; i < rows.size(); i++) {
+                            writer.write(rows.get(i));
+                            writer.write(System.lineSeparator());
+
+                            if ((i + 1) % EXPORT_INTERVAL == 0) {
+                                this.publish(new long[] {i + 1, rows.size()});
+                                if (this.isCancelled()) {
+                                    return i + 1;
+                                }
+                            }
+                        }
+                    }
+                    return rows.size();
+                }
+
+                @Override
+                protected void showProgress(long[] progress, double seconds) {
+                    progressBar.setIndeterminate(false);
+                    progressBar.setValue((int) (progress[0] * 100 / progress[1]));
+                    progressLabel.setText(String.format("Wrote %,d of %,d classes", progress[0],
+                        progress[1]));
+                }
+
+                @Override
+                protected void succeeded(Integer result, double seconds) {
+                    progressLabel.setText(String.format("Exported %,d classes to %s in %.2f s",
+                        result, file.getName(), seconds));
+                }
+
+                @Override
+                protected void failed(Throwable cause) {
+                    displayStatusPopup("Error: Unable to write " + file.getName() + ".", "Error");
+                }
+            }.start();
+        }
+
+        /**
+         * Lists the classes of each cycle carried by the exception, one cycle per line, so that the
+         * user need not hunt for the loop by hand. Overly long cycles are cut short, as are overly
+         * long lists of cycles, to keep the pop-up a manageable size.
+         * @param e
+         * @return String
+         */
+        private String describeCycles(CycleOccurrenceException e) {
+            StringBuilder description = new StringBuilder();
+            int shown = 0;
+
+            for (java.util.List<?> cycle : e.getCycles()) {
+                if (shown++ == 5) {
+                    description.append("\n...");
+                    break;
+                }
+
+                description.append("\n");
+                for (int i = 0; i < cycle.size() && i < 10; i++) {
+                    description.append(cycle.get(i)).append(" ");
+                }
+                if (cycle.size() > 10) {
+                    description.append("... (" + cycle.size() + " classes)");
+                }
             }
+            return description.toString();
         }
 
         /**
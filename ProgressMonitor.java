@@ -0,0 +1,44 @@
+/**
+ * ProgressMonitor.java - Observer of long-running parses and traversals
+ * Begun 12/04/17
+ * @author Andrew Eissen
+ */
+
+package commandlinecompiler;
+
+/**
+ * Callback through which <code>DependencyFileParser</code> and <code>DirectedGraph</code> report
+ * how far a long-running operation has got, and learn whether it should be abandoned. Both poll
+ * the monitor only every so often, once per block of the input file or once per few thousand
+ * vertices, so a monitor costs next to nothing and its methods may be called from a worker
+ * thread. An operation that finds <code>isCancelled</code> true stops by throwing a
+ * <code>java.util.concurrent.CancellationException</code>.
+ * <br />
+ * <br />
+ * The progress methods do nothing by default, so that a monitor interested only in cancellation
+ * may be written as a lambda.
+ */
+interface ProgressMonitor {
+
+    /**
+     * Reports the progress of a parse
+     * @param bytes Bytes of the file read so far
+     * @param totalBytes Size of the file
+     * @param lines Lines read so far
+     * @return void
+     */
+    default void parsed(long bytes, long totalBytes, long lines) {}
+
+    /**
+     * Reports the progress of a topological sort
+     * @param vertices Vertices finished so far
+     * @param totalVertices Number of vertices in the graph, an upper bound on those to be visited
+     * @return void
+     */
+    default void visited(long vertices, long totalVertices) {}
+
+    /**
+     * @return boolean
+     */
+    boolean isCancelled();
+}
@@ -0,0 +1,207 @@
+/**
+ * QueryCache.java - Bounded cache of topological sort results
+ * Begun 12/04/17
+ * @author Andrew Eissen
+ */
+
+package commandlinecompiler;
+
+import java.util.*;
+
+/**
+ * Least-recently-used cache of <code>inTopologicalOrder</code> results, keyed by the integer key
+ * of the queried vertex. Each entry stores the recompilation order as an <code>int</code> array of
+ * vertex keys along with a sorted copy used for membership tests, so hot classes may be answered
+ * without repeating the traversal.
+ * <br />
+ * <br />
+ * The cache is bounded both by the number of entries and by the total number of vertex keys held
+ * across all entries, evicting the least recently used entries until both limits are met. When
+ * the graph changes, <code>invalidate</code> drops only those entries whose reachable set contains
+ * the modified vertex, as no other result can be affected by a change to that vertex's edges.
+ */
+final class QueryCache {
+
+    // Limits on the number of entries and on the total number of vertex keys stored
+    private final int maxEntries;
+    private final long maxVertices;
+
+    // Cached orders, iterated from least to most recently used
+    private final LinkedHashMap<Integer, Entry> entries;
+
+    // Total length of all cached orders
+    private long storedVertices;
+
+    // Statistics
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long invalidationCount;
+
+    /**
+     * Parameterized constructor. A limit of zero entries disables caching altogether.
+     * @param maxEntries
+     * @param maxVertices
+     */
+    public QueryCache(int maxEntries, long maxVertices) {
+        if (maxEntries < 0 || maxVertices < 0) {
+            throw new IllegalArgumentException("Cache limits must not be negative");
+        }
+        this.maxEntries = maxEntries;
+        this.maxVertices = maxVertices;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the cached order for the vertex, or <code>null</code> on a miss. The returned array
+     * is shared with the cache and must not be modified. A disabled cache neither looks anything
+     * up nor counts the miss, so that it touches no state at all and may be consulted from several
+     * threads at once.
+     * @param index
+     * @return int[]
+     */
+    public int[] get(int index) {
+        if (this.maxEntries == 0) {
+            return null;
+        }
+
+        Entry entry = this.entries.get(index);
+
+        if (entry == null) {
+            this.missCount++;
+            return null;
+        }
+        this.hitCount++;
+        return entry.order;
+    }
+
+    /**
+     * Stores the order computed for the vertex, evicting least recently used entries as needed.
+     * Orders longer than the vertex limit on their own are not cached at all.
+     * @param index
+     * @param order
+     * @return void
+     */
+    public void put(int index, int[] order) {
+        if (this.maxEntries == 0 || order.length > this.maxVertices) {
+            return;
+        }
+
+        Entry previous = this.entries.put(index, new Entry(order));
+        if (previous != null) {
+            this.storedVertices -= previous.order.length;
+        }
+        this.storedVertices += order.length;
+
+        Iterator<Entry> iterator = this.entries.values().iterator();
+        while (this.entries.size() > this.maxEntries || this.storedVertices > this.maxVertices) {
+            Entry eldest = iterator.next();
+            this.storedVertices -= eldest.order.length;
+            iterator.remove();
+            this.evictionCount++;
+        }
+    }
+
+    /**
+     * Drops every entry whose order contains the given vertex. Called whenever an edge leaving
+     * that vertex is added or removed, or the vertex itself is removed.
+     * @param index
+     * @return void
+     */
+    public void invalidate(int index) {
+        Iterator<Entry> iterator = this.entries.values().iterator();
+
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (Arrays.binarySearch(entry.members, index) >= 0) {
+                this.storedVertices -= entry.order.length;
+                iterator.remove();
+                this.invalidationCount++;
+            }
+        }
+    }
+
+    /**
+     * Drops every entry, used after bulk changes to the graph
+     * @return void
+     */
+    public void clear() {
+        this.invalidationCount += this.entries.size();
+        this.entries.clear();
+        this.storedVertices = 0;
+    }
+
+    /**
+     * @return int
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Getter for <code>hitCount</code>
+     * @return this.hitCount
+     */
+    public long getHitCount() {
+        return this.hitCount;
+    }
+
+    /**
+     * Getter for <code>missCount</code>
+     * @return this.missCount
+     */
+    public long getMissCount() {
+        return this.missCount;
+    }
+
+    /**
+     * Getter for <code>evictionCount</code>
+     * @return this.evictionCount
+     */
+    public long getEvictionCount() {
+        return this.evictionCount;
+    }
+
+    /**
+     * Getter for <code>invalidationCount</code>
+     * @return this.invalidationCount
+     */
+    public long getInvalidationCount() {
+        return this.invalidationCount;
+    }
+
+    /**
+     * Fraction of lookups answered from the cache, or zero if there have been none
+     * @return double
+     */
+    public double getHitRate() {
+        long lookups = this.hitCount + this.missCount;
+        return (lookups == 0) ? 0.0 : (double) this.hitCount / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryCache[entries=" + this.entries.size() + ", vertices=" + this.storedVertices
+            + ", hits=" + this.hitCount + ", misses=" + this.missCount + ", evictions="
+            + this.evictionCount + ", invalidations=" + this.invalidationCount + "]";
+    }
+
+    /**
+     * A single cached result: the order itself and its keys in ascending order
+     */
+    private static final class Entry {
+
+        private final int[] order;
+        private final int[] members;
+
+        /**
+         * Parameterized constructor
+         * @param order
+         */
+        public Entry(int[] order) {
+            this.order = order;
+            this.members = order.clone();
+            Arrays.sort(this.members);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * QueryWorkspace.java - Reusable per-thread scratch space for topological sorts
+ * Begun 12/04/17
+ * @author Andrew Eissen
+ */
+
+package commandlinecompiler;
+
+import java.util.Arrays;
+
+/**
+ * Scratch state of the depth-first sort in <code>DirectedGraph</code>, kept from one query to the
+ * next so that a sort allocates nothing once the workspace has grown to the size of the graph.
+ * Each thread has a workspace of its own, obtained from <code>acquire</code> and handed back with
+ * <code>release</code>, so any number of threads may sort the same unchanging graph at once.
+ * <br />
+ * <br />
+ * In place of an array of vertex colors that would need clearing before every sort, each vertex
+ * carries an <code>int</code> stamp. Every sort advances the epoch by two, and a vertex is
+ * <code>GRAY</code> if stamped with the current epoch, <code>BLACK</code> if stamped with the one
+ * after it and <code>WHITE</code> if its stamp is older. The stamps are only cleared when the
+ * epoch is about to overflow, once every billion or so sorts.
+ * <br />
+ * <br />
+ * The workspace stays as large as the largest graph the thread has sorted, about four bytes per
+ * vertex plus the two stacks, for as long as the thread lives.
+ */
+final class QueryWorkspace {
+
+    // Workspace of each thread, created on first use
+    private static final ThreadLocal<QueryWorkspace> WORKSPACES =
+        ThreadLocal.withInitial(QueryWorkspace::new);
+
+    private int[] stamps;
+    private int epoch;
+
+    // Vertices awaiting expansion and exit markers, and finished vertices in post-order
+    private final IntStack pending;
+    private final IntStack order;
+
+    // Whether the workspace is currently lent out by acquire
+    private boolean inUse;
+
+    /**
+     * Default constructor
+     */
+    private QueryWorkspace() {
+        this.stamps = new int[0];
+        this.epoch = -1;
+        this.pending = new IntStack();
+        this.order = new IntStack();
+        this.inUse = false;
+    }
+
+    /**
+     * Returns the current thread's workspace, or a fresh one if that workspace is already in use
+     * further up the stack, as happens if a caller's sink starts another sort
+     * @return QueryWorkspace
+     */
+    static QueryWorkspace acquire() {
+        QueryWorkspace workspace = WORKSPACES.get();
+        if (workspace.inUse) {
+            workspace = new QueryWorkspace();
+        }
+        workspace.inUse = true;
+        return workspace;
+    }
+
+    /**
+     * Hands the workspace back once the sort and anything reading its order are done
+     * @return void
+     */
+    void release() {
+        this.inUse = false;
+    }
+
+    /**
+     * Prepares the workspace for a sort of a graph of the given size, marking every vertex
+     * <code>WHITE</code> and emptying both stacks
+     * @param vertexCount
+     * @return void
+     */
+    void begin(int vertexCount) {
+        if (this.stamps.length < vertexCount) {
+            int capacity = this.stamps.length + (this.stamps.length >> 1);
+            this.stamps = new int[Math.max(vertexCount, capacity)];
+        }
+
+        if (this.epoch >= Integer.MAX_VALUE - 2) {
+            Arrays.fill(this.stamps, 0);
+            this.epoch = -1;
+        }
+        this.epoch += 2;
+
+        this.pending.clear();
+        this.order.clear();
+    }
+
+    /**
+     * @param vertex
+     * @return boolean
+     */
+    boolean isWhite(int vertex) {
+        return this.stamps[vertex] < this.epoch;
+    }
+
+    /**
+     * @param vertex
+     * @return boolean
+     */
+    boolean isGray(int vertex) {
+        return this.stamps[vertex] == this.epoch;
+    }
+
+    /**
+     * @param vertex
+     * @return void
+     */
+    void markGray(int vertex) {
+        this.stamps[vertex] = this.epoch;
+    }
+
+    /**
+     * @param vertex
+     * @return void
+     */
+    void markBlack(int vertex) {
+        this.stamps[vertex] = this.epoch + 1;
+    }
+
+    /**
+     * Getter for <code>pending</code>
+     * @return this.pending
+     */
+    IntStack getPending() {
+        return this.pending;
+    }
+
+    /**
+     * Getter for <code>order</code>
+     * @return this.order
+     */
+    IntStack getOrder() {
+        return this.order;
+    }
+}
@@ -0,0 +1,368 @@
+/**
+ * ReachabilityIndex.java - Precomputed answers to "does A depend on B" queries
+ * Begun 12/04/17
+ * @author Andrew Eissen
+ */
+
+package commandlinecompiler;
+
+import java.util.*;
+
+/**
+ * Optional index over a <code>DirectedGraph</code> answering whether one class transitively
+ * depends on another without running a topological sort. The graph is first condensed, every
+ * strongly connected component becoming a single node numbered by its position in a topological
+ * order of the condensed graph, so that an edge between two components always leads from a lower
+ * number to a higher one.
+ * <br />
+ * <br />
+ * Within the memory budget, the transitive closure of the condensed graph is materialized as one
+ * bitset per component, computed from the highest number downwards by OR-ing together the
+ * bitsets of each component's successors. As a component can only reach components numbered
+ * above it, each bitset starts at the 64-bit word holding its own bit, halving the space to about
+ * <code>C * C / 16</code> bytes for <code>C</code> components, or some 60 MB for 30 000
+ * components. Queries then test a single bit. Beyond the budget, no closure is stored and each
+ * query runs a search of the condensed graph instead, pruned to the components numbered between
+ * the two classes.
+ * <br />
+ * <br />
+ * <code>edgeAdded</code> applies a new edge incrementally whenever it agrees with the component
+ * numbering, which the edges accepted by <code>addEdge</code> usually do, by OR-ing the target's
+ * bitset into that of every component reaching the origin. Any other change to the graph is
+ * detected through its modification count, and the index is rebuilt on the next query. The index
+ * is not thread-safe, although over a graph that no longer changes, such as a
+ * <code>ConcurrentDirectedGraph</code> snapshot, its queries only read shared state.
+ */
+final class ReachabilityIndex<T> {
+
+    // Default limit on the size of the materialized closure
+    public static final long DEFAULT_MEMORY_BUDGET = 256L << 20;
+
+    private final DirectedGraph<T> directedGraph;
+    private final long memoryBudget;
+
+    // Modification count of the graph the index reflects, and whether a rebuild is due anyway
+    private int expectedModCount;
+    private boolean stale;
+
+    // Number of vertices covered, and the component number of each
+    private int vertexCount;
+    private int[] componentOf;
+
+    // Number of components, and whether each contains a cycle
+    private int componentCount;
+    private boolean[] cyclic;
+
+    // Condensed graph in compressed sparse row form, plus edges added since the last rebuild
+    private int[] offsets;
+    private int[] targets;
+    private IntStack[] addedEdges;
+
+    /**
+     * Transitive closure, or <code>null</code> if over budget. <code>closure[c]</code> covers the
+     * components from <code>64 * (c / 64)</code> upwards, a component always reaching itself.
+     */
+    private long[][] closure;
+    private long closureBytes;
+
+    /**
+     * Default constructor, uses <code>DEFAULT_MEMORY_BUDGET</code>
+     * @param directedGraph
+     */
+    public ReachabilityIndex(DirectedGraph<T> directedGraph) {
+        this(directedGraph, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Parameterized constructor, builds the index at once
+     * @param directedGraph
+     * @param memoryBudget Maximum size of the closure in bytes, zero to always search
+     */
+    public ReachabilityIndex(DirectedGraph<T> directedGraph, long memoryBudget) {
+        if (memoryBudget < 0) {
+            throw new IllegalArgumentException("Memory budget must not be negative");
+        }
+        this.directedGraph = directedGraph;
+        this.memoryBudget = memoryBudget;
+        this.rebuild();
+    }
+
+    /**
+     * Whether <code>dependent</code> transitively depends on <code>prerequisite</code>, that is
+     * whether a change to <code>prerequisite</code> requires <code>dependent</code> to be
+     * recompiled. A class only depends on itself if it lies on a cycle.
+     * @param dependent
+     * @param prerequisite
+     * @return boolean
+     * @throws InvalidClassNameException
+     */
+    public boolean dependsOn(T dependent, T prerequisite) throws InvalidClassNameException {
+        Integer dependentIndex = this.directedGraph.getKey(dependent);
+        Integer prerequisiteIndex = this.directedGraph.getKey(prerequisite);
+
+        if (dependentIndex == null || prerequisiteIndex == null) {
+            throw new InvalidClassNameException("No such class");
+        }
+
+        if (this.stale || this.directedGraph.getModCount() != this.expectedModCount) {
+            this.rebuild();
+        }
+
+        int to = this.componentOf[dependentIndex];
+        int from = this.componentOf[prerequisiteIndex];
+
+        // Distinct classes sharing a component lie on a cycle together
+        if (from == to) {
+            return this.cyclic[from] || !dependentIndex.equals(prerequisiteIndex);
+        }
+        return this.reaches(from, to);
+    }
+
+    /**
+     * Brings the index up to date with an edge just added to the graph by <code>addEdge</code>.
+     * If the edge leads from a lower component number to a higher one, the closure is updated in
+     * place at a cost of at most one bitset operation per component numbered below the origin.
+     * Otherwise it may merge components or invalidate the numbering, and a rebuild is scheduled
+     * for the next query. The same happens if anything else has changed since the index was last
+     * brought up to date.
+     * @param fromVertex
+     * @param toVertex
+     * @return void
+     */
+    public void edgeAdded(T fromVertex, T toVertex) {
+        Integer fromIndex = this.directedGraph.getKey(fromVertex);
+        Integer toIndex = this.directedGraph.getKey(toVertex);
+
+        if (this.stale || fromIndex == null || toIndex == null
+                || fromIndex >= this.vertexCount || toIndex >= this.vertexCount
+                || this.directedGraph.getModCount() != this.expectedModCount + 1) {
+            this.stale = true;
+            return;
+        }
+        this.expectedModCount = this.directedGraph.getModCount();
+
+        int from = this.componentOf[fromIndex];
+        int to = this.componentOf[toIndex];
+
+        if (from == to) {
+            this.cyclic[from] |= fromIndex.equals(toIndex);
+            return;
+        } else if (from > to) {
+            this.stale = true;
+            return;
+        } else if (this.reaches(from, to)) {
+            return;
+        }
+
+        if (this.addedEdges == null) {
+            this.addedEdges = new IntStack[this.componentCount];
+        }
+        if (this.addedEdges[from] == null) {
+            this.addedEdges[from] = new IntStack(4);
+        }
+        this.addedEdges[from].push(to);
+
+        // Everything reaching the origin now reaches everything the target reaches
+        if (this.closure != null) {
+            for (int c = 0; c <= from; c++) {
+                if (this.reaches(c, from)) {
+                    ReachabilityIndex.orInto(this.closure[c], c, this.closure[to], to);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the index from scratch, condensing the graph with
+     * <code>DirectedGraph.findComponents</code> and, budget permitting, computing the closure
+     * @return void
+     */
+    public void rebuild() {
+        this.vertexCount = this.directedGraph.getVertexCount();
+        int[] roots = new int[this.vertexCount];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = i;
+        }
+
+        // Tarjan's algorithm completes components in reverse topological order
+        ArrayList<int[]> components = this.directedGraph.findComponents(roots, false);
+        this.componentCount = components.size();
+        this.componentOf = new int[this.vertexCount];
+        this.cyclic = new boolean[this.componentCount];
+
+        for (int i = 0; i < this.componentCount; i++) {
+            int component = this.componentCount - 1 - i;
+            for (int vertex : components.get(i)) {
+                this.componentOf[vertex] = component;
+            }
+            this.cyclic[component] = components.get(i).length > 1;
+        }
+
+        this.condense(components);
+        this.addedEdges = null;
+        this.buildClosure();
+        this.expectedModCount = this.directedGraph.getModCount();
+        this.stale = false;
+    }
+
+    /**
+     * Builds the condensed graph, dropping edges within a component and duplicate edges between
+     * two components
+     * @param components
+     * @return void
+     */
+    private void condense(ArrayList<int[]> components) {
+        CompactAdjacency adjacency = this.directedGraph.getCompactAdjacency();
+        int[] lastSeen = new int[this.componentCount];
+        IntStack condensed = new IntStack();
+        this.offsets = new int[this.componentCount + 1];
+
+        for (int component = 0; component < this.componentCount; component++) {
+            this.offsets[component] = condensed.size();
+
+            // Stamps are offset by one so that the zeroed array marks nothing as seen
+            for (int vertex : components.get(this.componentCount - 1 - component)) {
+                for (int e = adjacency.start(vertex); e < adjacency.end(vertex); e++) {
+                    int target = this.componentOf[adjacency.target(e)];
+                    if (target == component) {
+                        this.cyclic[component] |= adjacency.target(e) == vertex;
+                    } else if (lastSeen[target] != component + 1) {
+                        lastSeen[target] = component + 1;
+                        condensed.push(target);
+                    }
+                }
+            }
+        }
+        this.offsets[this.componentCount] = condensed.size();
+
+        this.targets = new int[condensed.size()];
+        for (int i = 0; i < this.targets.length; i++) {
+            this.targets[i] = condensed.get(i);
+        }
+    }
+
+    /**
+     * Materializes the closure if it fits within the memory budget, counting an array header of
+     * 16 bytes per bitset
+     * @return void
+     */
+    private void buildClosure() {
+        int lastWord = (this.componentCount - 1) >>> 6;
+        long bytes = 0;
+
+        for (int c = 0; c < this.componentCount; c++) {
+            bytes += 16 + 8L * (lastWord - (c >>> 6) + 1);
+        }
+
+        this.closure = null;
+        this.closureBytes = 0;
+        if (bytes > this.memoryBudget) {
+            return;
+        }
+
+        this.closure = new long[this.componentCount][];
+        for (int c = this.componentCount - 1; c >= 0; c--) {
+            long[] row = new long[lastWord - (c >>> 6) + 1];
+            row[0] |= 1L << (c & 63);
+
+            for (int e = this.offsets[c]; e < this.offsets[c + 1]; e++) {
+                ReachabilityIndex.orInto(row, c, this.closure[this.targets[e]], this.targets[e]);
+            }
+            this.closure[c] = row;
+        }
+        this.closureBytes = bytes;
+    }
+
+    /**
+     * ORs the bitset of component <code>source</code> into that of component <code>row</code>,
+     * which must not be numbered above it
+     * @param row
+     * @param rowComponent
+     * @param source
+     * @param sourceComponent
+     * @return void
+     */
+    private static void orInto(long[] row, int rowComponent, long[] source, int sourceComponent) {
+        int shift = (sourceComponent >>> 6) - (rowComponent >>> 6);
+        for (int i = 0; i < source.length; i++) {
+            row[i + shift] |= source[i];
+        }
+    }
+
+    /**
+     * Whether component <code>from</code> reaches component <code>to</code>
+     * @param from
+     * @param to
+     * @return boolean
+     */
+    private boolean reaches(int from, int to) {
+        if (from == to) {
+            return true;
+        } else if (from > to) {
+            return false;
+        } else if (this.closure != null) {
+            long word = this.closure[from][(to >>> 6) - (from >>> 6)];
+            return (word & (1L << (to & 63))) != 0;
+        }
+        return this.search(from, to);
+    }
+
+    /**
+     * Depth-first search of the condensed graph used in place of the closure. Components numbered
+     * above <code>to</code> cannot lead back to it and are skipped, so the marks only need to
+     * cover the components between the two.
+     * @param from
+     * @param to
+     * @return boolean
+     */
+    private boolean search(int from, int to) {
+        BitSet visited = new BitSet(to - from + 1);
+        IntStack pending = new IntStack();
+        pending.push(from);
+        visited.set(0);
+
+        while (!pending.isEmpty()) {
+            int current = pending.pop();
+            IntStack added = (this.addedEdges == null) ? null : this.addedEdges[current];
+            int degree = this.offsets[current + 1] - this.offsets[current];
+            int extra = (added == null) ? 0 : added.size();
+
+            for (int i = 0; i < degree + extra; i++) {
+                int next = (i < degree) ? this.targets[this.offsets[current] + i]
+                    : added.get(i - degree);
+                if (next == to) {
+                    return true;
+                } else if (next < to && !visited.get(next - from)) {
+                    visited.set(next - from);
+                    pending.push(next);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Getter for <code>componentCount</code>
+     * @return this.componentCount
+     */
+    public int getComponentCount() {
+        return this.componentCount;
+    }
+
+    /**
+     * Whether the closure is materialized, in which case queries run in constant time
+     * @return boolean
+     */
+    public boolean isClosureMaterialized() {
+        return this.closure != null;
+    }
+
+    /**
+     * Approximate memory held by the index, in bytes
+     * @return long
+     */
+    public long getMemoryUsage() {
+        return this.closureBytes + 4L * this.componentOf.length + this.cyclic.length
+            + 4L * this.offsets.length + 4L * this.targets.length;
+    }
+}
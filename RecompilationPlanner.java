@@ -0,0 +1,455 @@
+/**
+ * RecompilationPlanner.java - Critical-path scheduling of a recompilation across several workers
+ * Begun 12/04/17
+ * @author Andrew Eissen
+ */
+
+package commandlinecompiler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Turns the recompilation order of a class, or of a set of changed classes, into a schedule for a
+ * fixed number of workers, using the compile cost of each class as given by
+ * <code>DirectedGraph.getWeight</code>. A class may start as soon as every class it depends on
+ * within the recompilation has finished, and each worker compiles one class at a time.
+ * <br />
+ * <br />
+ * The affected classes are those returned by <code>inTopologicalOrder</code>. Walking that order
+ * backwards gives the bottom level of each class, its own cost plus the largest bottom level of
+ * any class depending on it, which is the least time the rebuild needs from the moment the class
+ * starts. The largest bottom level is the length of the critical path, the longest chain of
+ * dependent classes, which no number of workers can shorten.
+ * <br />
+ * <br />
+ * Classes are then assigned by list scheduling. Whenever a worker falls idle, it takes the ready
+ * class with the highest bottom level, so the longest chains are started first. Finding a
+ * schedule of least makespan is NP-hard, but this heuristic never exceeds the optimum by more
+ * than a factor of <code>2 - 1 / workers</code>, and usually comes far closer. Each
+ * <code>Plan</code> therefore also carries the lower bound set by the critical path and by the
+ * total work shared among all workers, against which its predicted time may be judged.
+ * <br />
+ * <br />
+ * Weights are not kept by <code>GraphSnapshot</code>, so they are best kept in a sidecar file
+ * next to the dependency file, named as the dependency file plus <code>WEIGHTS_SUFFIX</code> and
+ * read by <code>loadWeights</code> after every build. Planning only reads the graph, so any
+ * number of threads may plan over a graph that is not being changed.
+ */
+final class RecompilationPlanner<T> {
+
+    // Suffix appended to the name of a dependency file to find its weights
+    public static final String WEIGHTS_SUFFIX = ".weights";
+
+    private final DirectedGraph<T> directedGraph;
+    private final int workers;
+
+    /**
+     * Parameterized constructor
+     * @param directedGraph
+     * @param workers Number of workers compiling in parallel
+     */
+    public RecompilationPlanner(DirectedGraph<T> directedGraph, int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Worker count must be positive");
+        }
+        this.directedGraph = directedGraph;
+        this.workers = workers;
+    }
+
+    /**
+     * Plans the recompilation required by a change to the given class
+     * @param vertex
+     * @return Plan
+     * @throws InvalidClassNameException
+     * @throws CycleOccurrenceException
+     */
+    public Plan<T> plan(T vertex) throws InvalidClassNameException, CycleOccurrenceException {
+        return this.plan(this.directedGraph.inTopologicalOrder(vertex));
+    }
+
+    /**
+     * Plans the recompilation required by a change to all of the given classes at once
+     * @param vertices
+     * @return Plan
+     * @throws InvalidClassNameException
+     * @throws CycleOccurrenceException
+     */
+    public Plan<T> plan(Collection<? extends T> vertices)
+            throws InvalidClassNameException, CycleOccurrenceException {
+        return this.plan(this.directedGraph.inTopologicalOrder(vertices));
+    }
+
+    /**
+     * Schedules the classes of a recompilation order. Each class is identified by its position in
+     * the order, and the successors of a class, all of which lie later in the order, are found by
+     * binary search of the sorted keys, so that the work done depends only on the size of the
+     * order and not on that of the graph.
+     * @param order
+     * @return Plan
+     */
+    private Plan<T> plan(ArrayList<T> order) {
+        int size = order.size();
+        int[] keys = new int[size];
+        long[] sortedKeys = new long[size];
+
+        for (int i = 0; i < size; i++) {
+            keys[i] = this.directedGraph.indexOf(order.get(i));
+            sortedKeys[i] = ((long) keys[i] << 32) | i;
+        }
+        Arrays.sort(sortedKeys);
+
+        // Successors of each class by position, in compressed sparse row form
+        int[] offsets = new int[size + 1];
+        IntStack successors = new IntStack();
+        IntStack targets = new IntStack();
+        for (int i = 0; i < size; i++) {
+            successors.clear();
+            this.directedGraph.pushSuccessors(keys[i], successors);
+            for (int j = 0; j < successors.size(); j++) {
+                targets.push(RecompilationPlanner.positionOf(sortedKeys, successors.get(j)));
+            }
+            offsets[i + 1] = targets.size();
+        }
+
+        // Bottom levels, and the successor continuing the longest chain from each class
+        double[] weights = new double[size];
+        double[] bottomLevels = new double[size];
+        int[] next = new int[size];
+        double totalWork = 0;
+
+        for (int i = size - 1; i >= 0; i--) {
+            weights[i] = this.directedGraph.getWeight(keys[i]);
+            totalWork += weights[i];
+            next[i] = -1;
+
+            double longest = 0;
+            for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+                int target = targets.get(e);
+                if (next[i] < 0 || bottomLevels[target] > longest) {
+                    longest = bottomLevels[target];
+                    next[i] = target;
+                }
+            }
+            bottomLevels[i] = weights[i] + longest;
+        }
+
+        ArrayList<T> criticalPath = new ArrayList<>();
+        double criticalPathLength = 0;
+        int first = -1;
+        for (int i = 0; i < size; i++) {
+            if (first < 0 || bottomLevels[i] > criticalPathLength) {
+                criticalPathLength = bottomLevels[i];
+                first = i;
+            }
+        }
+        for (int i = first; i >= 0; i = next[i]) {
+            criticalPath.add(order.get(i));
+        }
+
+        ArrayList<Assignment<T>> assignments =
+            this.schedule(order, offsets, targets, weights, bottomLevels);
+        double makespan = 0;
+        for (Assignment<T> assignment : assignments) {
+            makespan = Math.max(makespan, assignment.getFinish());
+        }
+
+        return new Plan<>(this.workers, assignments, criticalPath, criticalPathLength,
+            totalWork, makespan);
+    }
+
+    /**
+     * Simulates the workers, handing the ready class of highest bottom level to each worker that
+     * falls idle. Ties go to the class earlier in the recompilation order, and to the worker of
+     * lowest number.
+     * @param order
+     * @param offsets
+     * @param targets
+     * @param weights
+     * @param bottomLevels
+     * @return ArrayList<Assignment<T>> The assignments in order of starting time
+     */
+    private ArrayList<Assignment<T>> schedule(ArrayList<T> order, int[] offsets, IntStack targets,
+            double[] weights, double[] bottomLevels) {
+
+        int size = order.size();
+        int[] inDegrees = new int[size];
+        for (int e = 0; e < targets.size(); e++) {
+            inDegrees[targets.get(e)]++;
+        }
+
+        PriorityQueue<Integer> ready = new PriorityQueue<>((a, b) -> {
+            int comparison = Double.compare(bottomLevels[b], bottomLevels[a]);
+            return (comparison != 0) ? comparison : Integer.compare(a, b);
+        });
+        for (int i = 0; i < size; i++) {
+            if (inDegrees[i] == 0) {
+                ready.add(i);
+            }
+        }
+
+        // Classes being compiled, by finishing time, and the workers free to take another
+        double[] finishes = new double[size];
+        int[] workerOf = new int[size];
+        PriorityQueue<Integer> running = new PriorityQueue<>((a, b) -> {
+            int comparison = Double.compare(finishes[a], finishes[b]);
+            return (comparison != 0) ? comparison : Integer.compare(workerOf[a], workerOf[b]);
+        });
+        IntStack idle = new IntStack();
+        for (int worker = Math.min(this.workers, Math.max(size, 1)) - 1; worker >= 0; worker--) {
+            idle.push(worker);
+        }
+
+        ArrayList<Assignment<T>> assignments = new ArrayList<>(size);
+        double time = 0;
+
+        while (assignments.size() < size) {
+            while (!ready.isEmpty() && !idle.isEmpty()) {
+                int next = ready.poll();
+                workerOf[next] = idle.pop();
+                finishes[next] = time + weights[next];
+                running.add(next);
+                assignments.add(new Assignment<>(order.get(next), workerOf[next], time,
+                    finishes[next]));
+            }
+
+            // Frees every worker finishing at the earliest time, lowest number on top
+            time = finishes[running.peek()];
+            IntStack freed = new IntStack();
+            while (!running.isEmpty() && finishes[running.peek()] == time) {
+                int finished = running.poll();
+                freed.push(workerOf[finished]);
+                for (int e = offsets[finished]; e < offsets[finished + 1]; e++) {
+                    if (--inDegrees[targets.get(e)] == 0) {
+                        ready.add(targets.get(e));
+                    }
+                }
+            }
+            while (!freed.isEmpty()) {
+                idle.push(freed.pop());
+            }
+        }
+        return assignments;
+    }
+
+    /**
+     * Finds the position in the recompilation order of the class with the given key
+     * @param sortedKeys Keys shifted into the upper half, positions in the lower
+     * @param key
+     * @return int
+     */
+    private static int positionOf(long[] sortedKeys, int key) {
+        int index = Arrays.binarySearch(sortedKeys, (long) key << 32);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return (int) sortedKeys[index];
+    }
+
+    /**
+     * Reads compile costs from a weights file, each non-blank line of which holds a class name
+     * and its cost separated by whitespace. Lines beginning with <code>#</code> are skipped, as
+     * are classes not in the graph, so the file may cover classes since removed.
+     * @param directedGraph
+     * @param file
+     * @return int Number of weights set
+     * @throws IOException If the file cannot be read or a line is malformed
+     */
+    public static int loadWeights(DirectedGraph<String> directedGraph, Path file)
+            throws IOException {
+        int count = 0;
+        int lineNumber = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.charAt(0) == '#') {
+                    continue;
+                }
+
+                String[] fields = trimmed.split("\\s+");
+                try {
+                    if (fields.length != 2) {
+                        throw new IllegalArgumentException("Expected class name and weight");
+                    }
+                    double weight = Double.parseDouble(fields[1]);
+                    if (directedGraph.indexOf(fields[0]) >= 0) {
+                        directedGraph.setWeight(fields[0], weight);
+                        count++;
+                    }
+                } catch (IllegalArgumentException | InvalidClassNameException e) {
+                    throw new IOException(file.getFileName() + ":" + lineNumber + ": "
+                        + e.getMessage(), e);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Schedule produced by <code>plan</code>
+     */
+    static final class Plan<T> {
+
+        private final int workers;
+        private final ArrayList<Assignment<T>> assignments;
+        private final ArrayList<T> criticalPath;
+        private final double criticalPathLength;
+        private final double totalWork;
+        private final double makespan;
+
+        /**
+         * Parameterized constructor
+         * @param workers
+         * @param assignments
+         * @param criticalPath
+         * @param criticalPathLength
+         * @param totalWork
+         * @param makespan
+         */
+        Plan(int workers, ArrayList<Assignment<T>> assignments, ArrayList<T> criticalPath,
+                double criticalPathLength, double totalWork, double makespan) {
+            this.workers = workers;
+            this.assignments = assignments;
+            this.criticalPath = criticalPath;
+            this.criticalPathLength = criticalPathLength;
+            this.totalWork = totalWork;
+            this.makespan = makespan;
+        }
+
+        /**
+         * Getter for <code>workers</code>
+         * @return this.workers
+         */
+        public int getWorkers() {
+            return this.workers;
+        }
+
+        /**
+         * Every class of the recompilation with its worker and times, in order of starting time
+         * @return List<Assignment<T>>
+         */
+        public List<Assignment<T>> getAssignments() {
+            return Collections.unmodifiableList(this.assignments);
+        }
+
+        /**
+         * The classes assigned to one worker, in the order it compiles them
+         * @param worker
+         * @return ArrayList<T>
+         */
+        public ArrayList<T> getAssignments(int worker) {
+            ArrayList<T> classes = new ArrayList<>();
+            for (Assignment<T> assignment : this.assignments) {
+                if (assignment.getWorker() == worker) {
+                    classes.add(assignment.getVertex());
+                }
+            }
+            return classes;
+        }
+
+        /**
+         * The longest chain of dependent classes, from the changed class it starts at onwards
+         * @return List<T>
+         */
+        public List<T> getCriticalPath() {
+            return Collections.unmodifiableList(this.criticalPath);
+        }
+
+        /**
+         * Getter for <code>criticalPathLength</code>
+         * @return this.criticalPathLength
+         */
+        public double getCriticalPathLength() {
+            return this.criticalPathLength;
+        }
+
+        /**
+         * Getter for <code>totalWork</code>, the sum of the weights of all classes
+         * @return this.totalWork
+         */
+        public double getTotalWork() {
+            return this.totalWork;
+        }
+
+        /**
+         * Predicted wall-clock time of the recompilation, the time the last class finishes
+         * @return this.makespan
+         */
+        public double getMakespan() {
+            return this.makespan;
+        }
+
+        /**
+         * The least makespan any schedule could achieve with this many workers, the greater of
+         * the critical path length and the total work divided among the workers
+         * @return double
+         */
+        public double getLowerBound() {
+            return Math.max(this.criticalPathLength, this.totalWork / this.workers);
+        }
+    }
+
+    /**
+     * A class scheduled on a worker
+     */
+    static final class Assignment<T> {
+
+        private final T vertex;
+        private final int worker;
+        private final double start;
+        private final double finish;
+
+        /**
+         * Parameterized constructor
+         * @param vertex
+         * @param worker
+         * @param start
+         * @param finish
+         */
+        Assignment(T vertex, int worker, double start, double finish) {
+            this.vertex = vertex;
+            this.worker = worker;
+            this.start = start;
+            this.finish = finish;
+        }
+
+        /**
+         * Getter for <code>vertex</code>
+         * @return this.vertex
+         */
+        public T getVertex() {
+            return this.vertex;
+        }
+
+        /**
+         * Getter for <code>worker</code>, numbered from zero
+         * @return this.worker
+         */
+        public int getWorker() {
+            return this.worker;
+        }
+
+        /**
+         * Getter for <code>start</code>
+         * @return this.start
+         */
+        public double getStart() {
+            return this.start;
+        }
+
+        /**
+         * Getter for <code>finish</code>
+         * @return this.finish
+         */
+        public double getFinish() {
+            return this.finish;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * ResultListModel.java - Filterable list model over a recompilation order
+ * Begun 12/04/17
+ * @author Andrew Eissen
+ */
+
+package commandlinecompiler;
+
+import java.util.*;
+import javax.swing.AbstractListModel;
+
+/**
+ * List model backing the result list of <code>P4GUI</code>. It wraps the list returned by
+ * <code>inTopologicalOrder</code> without copying any class names, so a <code>JList</code> with
+ * fixed cell sizes renders only the rows currently scrolled into view, however long the order.
+ * <br />
+ * <br />
+ * A case-insensitive substring filter may be applied, in which case the model exposes only the
+ * matching classes, still in recompilation order, through an array of their positions in the
+ * full list. Typing usually extends the filter one character at a time, and a filter containing
+ * the previous one can only match a subset of its rows, so such refinements scan the current
+ * matches rather than the whole order.
+ * @see javax.swing.AbstractListModel
+ */
+final class ResultListModel extends AbstractListModel<String> {
+
+    private static final long serialVersionUID = 1L;
+
+    // Full recompilation order
+    private List<String> results;
+
+    // Lower-case filter, and the positions in results of the matching classes, null if unfiltered
+    private String filter;
+    private int[] matches;
+    private int matchCount;
+
+    /**
+     * Default constructor, the model starts out empty
+     */
+    public ResultListModel() {
+        this.results = Collections.emptyList();
+        this.filter = "";
+        this.matches = null;
+        this.matchCount = 0;
+    }
+
+    /**
+     * Replaces the results, keeping the current filter
+     * @param results
+     * @return void
+     */
+    public void setResults(List<String> results) {
+        int oldSize = this.getSize();
+        this.results = results;
+        this.matches = null;
+        this.applyFilter(this.filter, false);
+        this.fireSizeChanged(oldSize);
+    }
+
+    /**
+     * Setter for <code>filter</code>, the empty string showing every class
+     * @param filter
+     * @return void
+     */
+    public void setFilter(String filter) {
+        String lowerCase = filter.toLowerCase(Locale.ROOT);
+        if (lowerCase.equals(this.filter)) {
+            return;
+        }
+
+        int oldSize = this.getSize();
+        this.applyFilter(lowerCase, this.matches != null && lowerCase.contains(this.filter));
+        this.fireSizeChanged(oldSize);
+    }
+
+    /**
+     * Recomputes <code>matches</code> for the given filter, either from the full results or, if
+     * <code>refine</code> is set, from the current matches only
+     * @param lowerCase
+     * @param refine
+     * @return void
+     */
+    private void applyFilter(String lowerCase, boolean refine) {
+        this.filter = lowerCase;
+
+        if (lowerCase.isEmpty()) {
+            this.matches = null;
+            this.matchCount = 0;
+            return;
+        }
+
+        int candidates = refine ? this.matchCount : this.results.size();
+        int[] kept = refine ? this.matches : new int[candidates];
+        int count = 0;
+
+        // Refinement compacts the matches in place, as kept positions never overtake read ones
+        for (int i = 0; i < candidates; i++) {
+            int position = refine ? this.matches[i] : i;
+            if (ResultListModel.containsIgnoreCase(this.results.get(position), lowerCase)) {
+                kept[count++] = position;
+            }
+        }
+        this.matches = kept;
+        this.matchCount = count;
+    }
+
+    /**
+     * Case-insensitive substring test that, unlike lower-casing the name first, allocates nothing.
+     * Only positions holding the first character of the filter, in either case, are compared in
+     * full.
+     * @param name
+     * @param lowerCase
+     * @return boolean
+     */
+    private static boolean containsIgnoreCase(String name, String lowerCase) {
+        char first = lowerCase.charAt(0);
+        char upper = Character.toUpperCase(first);
+        int last = name.length() - lowerCase.length();
+
+        for (int i = 0; i <= last; i++) {
+            char c = name.charAt(i);
+            if ((c == first || c == upper)
+                    && name.regionMatches(true, i, lowerCase, 0, lowerCase.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Notifies listeners of the rows added or removed, then of the rows that changed in place
+     * @param oldSize
+     * @return void
+     */
+    private void fireSizeChanged(int oldSize) {
+        int newSize = this.getSize();
+
+        if (newSize < oldSize) {
+            this.fireIntervalRemoved(this, newSize, oldSize - 1);
+        } else if (newSize > oldSize) {
+            this.fireIntervalAdded(this, oldSize, newSize - 1);
+        }
+        if (Math.min(oldSize, newSize) > 0) {
+            this.fireContentsChanged(this, 0, Math.min(oldSize, newSize) - 1);
+        }
+    }
+
+    /**
+     * Number of classes shown, after filtering
+     * @return int
+     */
+    @Override
+    public int getSize() {
+        return (this.matches == null) ? this.results.size() : this.matchCount;
+    }
+
+    /**
+     * @param index
+     * @return String
+     */
+    @Override
+    public String getElementAt(int index) {
+        return this.results.get((this.matches == null) ? index : this.matches[index]);
+    }
+
+    /**
+     * Number of classes in the full order, before filtering
+     * @return int
+     */
+    public int getTotalSize() {
+        return this.results.size();
+    }
+
+    /**
+     * Returns a fixed copy of the rows currently shown, for use off the event dispatch thread
+     * while the filter goes on changing. Only the positions of the matches are copied, and
+     * nothing at all if no filter is applied.
+     * @return List<String>
+     */
+    public List<String> snapshot() {
+        List<String> results = this.results;
+        if (this.matches == null) {
+            return results;
+        }
+
+        int[] positions = Arrays.copyOf(this.matches, this.matchCount);
+        return new AbstractList<String>() {
+
+            @Override
+            public String get(int index) {
+                return results.get(positions[index]);
+            }
+
+            @Override
+            public int size() {
+                return positions.length;
+            }
+        };
+    }
+}
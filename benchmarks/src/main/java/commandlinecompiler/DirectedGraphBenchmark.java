@@ -0,0 +1,211 @@
+/**
+ * DirectedGraphBenchmark.java - JMH benchmarks of graph building, sorting and parsing
+ * Begun 12/04/17
+ * @author Andrew Eissen
+ */
+
+package commandlinecompiler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH counterpart of <code>GraphBenchmark</code>, measuring <code>buildDirectedGraph</code>,
+ * <code>inTopologicalOrder</code> (both the <code>ArrayList</code> version and the allocation-free
+ * version writing to a sink) and <code>DependencyFileParser</code>, sequential and parallel, over
+ * every <code>GraphGenerator</code> shape from 1K to 10M vertices. Run with the module's
+ * <code>jmh</code> profile, JMH's GC profiler reports the bytes allocated per operation by all
+ * threads, parse workers included, next to the time per operation.
+ * <br />
+ * <br />
+ * JMH's generated code lives in a subpackage, so unlike the rest of the project this class and
+ * its states are public. Shapes are passed as names for the same reason, the enum itself being
+ * package-private. Each state generates its input once per trial, so only the benchmarks that
+ * need a built graph or a written file pay for one. The 10M-vertex sizes need a few gigabytes of
+ * heap and have not yet been exercised; pass <code>-p size=...</code> to leave them out.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class DirectedGraphBenchmark {
+
+    private static final long SEED = 42L;
+
+    /**
+     * Generated input lines, for the build benchmark
+     */
+    @State(Scope.Benchmark)
+    public static class Lines {
+
+        @Param({"CHAIN", "FAN_OUT", "LAYERED", "POWER_LAW", "CYCLIC"})
+        public String shape;
+
+        @Param({"1000", "10000", "100000", "1000000", "10000000"})
+        public int size;
+
+        ArrayList<Integer[]> lines;
+
+        /**
+         * @return void
+         */
+        @Setup(Level.Trial)
+        public void generate() {
+            this.lines = DirectedGraphBenchmark.generate(this.shape, this.size);
+        }
+    }
+
+    /**
+     * A compacted graph with its query cache disabled, so that every sort performs the traversal
+     */
+    @State(Scope.Benchmark)
+    public static class Graph {
+
+        @Param({"CHAIN", "FAN_OUT", "LAYERED", "POWER_LAW", "CYCLIC"})
+        public String shape;
+
+        @Param({"1000", "10000", "100000", "1000000", "10000000"})
+        public int size;
+
+        DirectedGraph<Integer> directedGraph;
+
+        /**
+         * @return void
+         */
+        @Setup(Level.Trial)
+        public void build() {
+            this.directedGraph = new DirectedGraph<>();
+            this.directedGraph.buildDirectedGraph(
+                DirectedGraphBenchmark.generate(this.shape, this.size));
+            this.directedGraph.compact();
+            this.directedGraph.setQueryCacheLimits(0, 0);
+        }
+    }
+
+    /**
+     * The generated lines written to a temporary dependency file, for the parse benchmarks
+     */
+    @State(Scope.Benchmark)
+    public static class DependencyFile {
+
+        @Param({"CHAIN", "FAN_OUT", "LAYERED", "POWER_LAW", "CYCLIC"})
+        public String shape;
+
+        @Param({"1000", "10000", "100000", "1000000", "10000000"})
+        public int size;
+
+        Path file;
+
+        /**
+         * @return void
+         * @throws IOException
+         */
+        @Setup(Level.Trial)
+        public void write() throws IOException {
+            this.file = Files.createTempFile("graph-benchmark", ".txt");
+            GraphGenerator.write(DirectedGraphBenchmark.generate(this.shape, this.size),
+                this.file);
+        }
+
+        /**
+         * @return void
+         * @throws IOException
+         */
+        @TearDown(Level.Trial)
+        public void delete() throws IOException {
+            Files.deleteIfExists(this.file);
+        }
+    }
+
+    /**
+     * @param shape
+     * @param size
+     * @return ArrayList<Integer[]>
+     */
+    private static ArrayList<Integer[]> generate(String shape, int size) {
+        return GraphGenerator.generate(GraphGenerator.Shape.valueOf(shape), size, SEED);
+    }
+
+    /**
+     * @param input
+     * @return Object
+     */
+    @Benchmark
+    public Object build(Lines input) {
+        DirectedGraph<Integer> directedGraph = new DirectedGraph<>();
+        directedGraph.buildDirectedGraph(input.lines);
+        directedGraph.compact();
+        return directedGraph;
+    }
+
+    /**
+     * @param graph
+     * @return Object
+     * @throws InvalidClassNameException
+     */
+    @Benchmark
+    public Object sort(Graph graph) throws InvalidClassNameException {
+        try {
+            return graph.directedGraph.inTopologicalOrder(0);
+        } catch (CycleOccurrenceException e) {
+            return e.getCycles();
+        }
+    }
+
+    /**
+     * Steady state allocation should be zero once the workspace has grown
+     * @param graph
+     * @param blackhole
+     * @return void
+     * @throws InvalidClassNameException
+     */
+    @Benchmark
+    public void sink(Graph graph, Blackhole blackhole) throws InvalidClassNameException {
+        try {
+            graph.directedGraph.inTopologicalOrder(0, blackhole::consume);
+        } catch (CycleOccurrenceException e) {
+            blackhole.consume(e);
+        }
+    }
+
+    /**
+     * @param input
+     * @return Object
+     * @throws IOException
+     */
+    @Benchmark
+    public Object parse(DependencyFile input) throws IOException {
+        return new DependencyFileParser().parse(input.file.toString());
+    }
+
+    /**
+     * @param input
+     * @return Object
+     * @throws IOException
+     */
+    @Benchmark
+    public Object pparse(DependencyFile input) throws IOException {
+        DirectedGraph<String> directedGraph = new DirectedGraph<>();
+        new DependencyFileParser().parse(input.file, directedGraph,
+            Runtime.getRuntime().availableProcessors());
+        return directedGraph;
+    }
+}